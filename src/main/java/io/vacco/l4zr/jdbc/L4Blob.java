@@ -4,6 +4,7 @@ import javax.sql.rowset.serial.SerialBlob;
 import java.io.*;
 import java.sql.*;
 import java.util.Arrays;
+import java.util.Objects;
 
 import static io.vacco.l4zr.jdbc.L4Err.*;
 
@@ -12,18 +13,34 @@ public class L4Blob implements Blob {
   private ByteArrayOutputStream data;
   private SerialBlob serialBlob;
   private boolean isClosed = false;
+  private L4Lob.Ref ref;
 
   public L4Blob() throws SQLException {
     this.data = new ByteArrayOutputStream();
     this.serialBlob = new SerialBlob(new byte[0]);
   }
 
+  /** A BLOB left on the server, read in ranges until it is searched or modified. */
+  public L4Blob(L4Lob.Ref ref) throws SQLException {
+    this();
+    this.ref = Objects.requireNonNull(ref);
+  }
+
   private void checkClosed() throws SQLException {
     if (isClosed) {
       throw new SQLException("Blob is closed", L4Err.SqlStateGeneralError);
     }
   }
 
+  private void load() throws SQLException {
+    if (ref != null) {
+      var bytes = ref.bytes(1, Integer.MAX_VALUE);
+      ref = null;
+      data.write(bytes, 0, bytes.length);
+      updateSerialBlob();
+    }
+  }
+
   private void updateSerialBlob() throws SQLException {
     try {
       this.serialBlob = new SerialBlob(data.toByteArray());
@@ -34,36 +51,39 @@ public class L4Blob implements Blob {
 
   @Override public long length() throws SQLException {
     checkClosed();
-    return serialBlob.length();
+    return ref != null ? ref.length() : serialBlob.length();
   }
 
   @Override public byte[] getBytes(long pos, int length) throws SQLException {
     checkClosed();
-    return serialBlob.getBytes(pos, length);
+    return ref != null ? ref.bytes(pos, length) : serialBlob.getBytes(pos, length);
   }
 
   @Override public InputStream getBinaryStream() throws SQLException {
     checkClosed();
-    return serialBlob.getBinaryStream();
+    return ref != null ? ref.stream(1, -1) : serialBlob.getBinaryStream();
   }
 
   @Override public InputStream getBinaryStream(long pos, long length) throws SQLException {
     checkClosed();
-    return serialBlob.getBinaryStream(pos, length);
+    return ref != null ? ref.stream(pos, length) : serialBlob.getBinaryStream(pos, length);
   }
 
   @Override public long position(byte[] pattern, long start) throws SQLException {
     checkClosed();
+    load();
     return serialBlob.position(pattern, start);
   }
 
   @Override public long position(Blob pattern, long start) throws SQLException {
     checkClosed();
+    load();
     return serialBlob.position(pattern, start);
   }
 
   @Override public int setBytes(long pos, byte[] bytes) throws SQLException {
     checkClosed();
+    load();
     try {
       var current = data.toByteArray();
       data.reset();
@@ -102,6 +122,7 @@ public class L4Blob implements Blob {
 
   @Override public void truncate(long len) throws SQLException {
     checkClosed();
+    load();
     byte[] bytes = data.toByteArray();
     data.reset();
     data.write(bytes, 0, (int) len);
@@ -110,6 +131,7 @@ public class L4Blob implements Blob {
 
   @Override public void free() throws SQLException {
     if (!isClosed) {
+      ref = null;
       data = null;
       serialBlob.free();
       serialBlob = null;
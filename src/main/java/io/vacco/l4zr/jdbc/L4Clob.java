@@ -4,6 +4,7 @@ import javax.sql.rowset.serial.SerialClob;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.util.Objects;
 
 import static io.vacco.l4zr.jdbc.L4Err.*;
 
@@ -12,18 +13,34 @@ public class L4Clob implements Clob {
   private StringBuilder data;
   private SerialClob serialClob;
   private boolean isClosed = false;
+  private L4Lob.Ref ref;
 
   public L4Clob() throws SQLException {
     this.data = new StringBuilder();
     this.serialClob = new SerialClob(new char[0]);
   }
 
+  /** A CLOB left on the server, read in ranges until it is searched or modified. */
+  public L4Clob(L4Lob.Ref ref) throws SQLException {
+    this();
+    this.ref = Objects.requireNonNull(ref);
+  }
+
   private void checkClosed() throws SQLException {
     if (isClosed) {
       throw generalError("Clob is closed");
     }
   }
 
+  private void load() throws SQLException {
+    if (ref != null) {
+      var text = ref.text(1, Integer.MAX_VALUE);
+      ref = null;
+      data.append(text);
+      updateSerialClob();
+    }
+  }
+
   private void updateSerialClob() throws SQLException {
     try {
       this.serialClob = new SerialClob(data.toString().toCharArray());
@@ -34,41 +51,45 @@ public class L4Clob implements Clob {
 
   @Override public long length() throws SQLException {
     checkClosed();
-    return serialClob.length();
+    return ref != null ? ref.length() : serialClob.length();
   }
 
   @Override public String getSubString(long pos, int length) throws SQLException {
     checkClosed();
-    return serialClob.getSubString(pos, length);
+    return ref != null ? ref.text(pos, length) : serialClob.getSubString(pos, length);
   }
 
   @Override public Reader getCharacterStream() throws SQLException {
     checkClosed();
-    return serialClob.getCharacterStream();
+    return ref != null ? ref.reader(1, -1) : serialClob.getCharacterStream();
   }
 
   @Override public Reader getCharacterStream(long pos, long length) throws SQLException {
     checkClosed();
-    return serialClob.getCharacterStream(pos, length);
+    return ref != null ? ref.reader(pos, length) : serialClob.getCharacterStream(pos, length);
   }
 
   @Override public InputStream getAsciiStream() throws SQLException {
     checkClosed();
+    load();
     return serialClob.getAsciiStream();
   }
 
   @Override public long position(String searchstr, long start) throws SQLException {
     checkClosed();
+    load();
     return serialClob.position(searchstr, start);
   }
 
   @Override public long position(Clob searchstr, long start) throws SQLException {
     checkClosed();
+    load();
     return serialClob.position(searchstr, start);
   }
 
   @Override public int setString(long pos, String str) throws SQLException {
     checkClosed();
+    load();
     int start = (int) pos - 1;
     if (start + str.length() > data.length()) {
       data.setLength(start);
@@ -114,12 +135,14 @@ public class L4Clob implements Clob {
 
   @Override public void truncate(long len) throws SQLException {
     checkClosed();
+    load();
     data.setLength((int) len);
     updateSerialClob();
   }
 
   @Override public void free() throws SQLException {
     if (!isClosed) {
+      ref = null;
       data = null;
       serialClob.free();
       serialClob = null;
@@ -109,12 +109,13 @@ public class L4Conn implements Connection {
   }
 
   @Override public void setReadOnly(boolean readOnly) throws SQLException {
-    checkClosed(); // no-op
+    checkClosed();
+    client.setReadOnly(readOnly);
   }
 
   @Override public boolean isReadOnly() throws SQLException {
     checkClosed();
-    return false;
+    return client.isReadOnly();
   }
 
   @Override public void setCatalog(String catalog) throws SQLException {
@@ -272,7 +273,7 @@ public class L4Conn implements Connection {
       return false;
     }
     try {
-      client.status();
+      client.statusTape(timeout);
       return true;
     } catch (Exception e) {
       return false;
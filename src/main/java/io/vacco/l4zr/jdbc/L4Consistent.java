@@ -0,0 +1,26 @@
+package io.vacco.l4zr.jdbc;
+
+import io.vacco.l4zr.rqlite.*;
+import java.sql.SQLException;
+
+/**
+ * Per-statement read consistency, reachable via
+ * <code>statement.unwrap(L4Consistent.class)</code>. Settings made here take
+ * precedence over <code>/*+ level=... *&#47;</code> SQL hints, which in turn
+ * take precedence over the connection-wide {@link L4Options}.
+ */
+public interface L4Consistent {
+
+  void setConsistency(L4Consistency consistency) throws SQLException;
+
+  L4Consistency getConsistency() throws SQLException;
+
+  default void setConsistencyLevel(L4Level level) throws SQLException {
+    setConsistency(L4Consistency.merge(getConsistency(), new L4Consistency(level, null, null)));
+  }
+
+  default void setFreshness(long freshnessSec, boolean strict) throws SQLException {
+    setConsistency(L4Consistency.merge(getConsistency(), new L4Consistency(null, freshnessSec, strict)));
+  }
+
+}
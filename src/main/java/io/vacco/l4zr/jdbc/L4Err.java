@@ -1,9 +1,9 @@
 package io.vacco.l4zr.jdbc;
 
 import io.vacco.l4zr.rqlite.L4Result;
-import java.sql.SQLException;
-import java.sql.SQLFeatureNotSupportedException;
-import java.sql.SQLWarning;
+import java.net.http.HttpTimeoutException;
+import java.sql.*;
+import java.util.concurrent.CancellationException;
 
 import static java.lang.String.format;
 
@@ -20,7 +20,11 @@ public class L4Err {
     SqlStateInvalidType         = "22005",
     SqlStateInvalidQuery        = "42000",
     SqlStateConnectionError     = "08S01",
-    SqlStateInvalidTransaction  = "25000";
+    SqlStateInvalidTransaction  = "25000",
+    SqlStateReadOnly            = "25006",
+    SqlStateTimeout             = "HYT00",
+    SqlStateCancelled           = "HY008",
+    SqlStateRejected            = "08004";
 
   public static SQLException generalError(String msg) {
     return new SQLException(msg, SqlStateGeneralError);
@@ -203,20 +207,51 @@ public class L4Err {
     return new SQLException(msg, SqlStateInvalidQuery);
   }
 
+  /** @return a timeout or cancellation error if that is what ended the request, otherwise null. */
+  public static SQLException aborted(Exception e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof HttpTimeoutException) {
+        return new SQLTimeoutException(format("Statement timed out: %s", t.getMessage()), SqlStateTimeout, e);
+      }
+      if (t instanceof CancellationException) {
+        return new SQLException("Statement cancelled", SqlStateCancelled, e);
+      }
+    }
+    return null;
+  }
+
+  /** @return a transient error if the driver's own concurrency limit turned the request away, otherwise null. */
+  public static SQLException rejected(Exception e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof io.vacco.l4zr.rqlite.L4Err.LimitError) {
+        return new SQLTransientException(format("Request rejected: %s", t.getMessage()), SqlStateRejected, e);
+      }
+    }
+    return null;
+  }
+
+  private static SQLException failed(String kind, Exception e) {
+    var ab = aborted(e);
+    if (ab == null) {
+      ab = rejected(e);
+    }
+    return ab != null ? ab : new SQLException(format("%s failed: %s", kind, e.getMessage()), SqlStateConnectionError, e);
+  }
+
   public static SQLException badQuery(Exception e) {
-    return new SQLException(format("Query execution failed: %s", e.getMessage()), SqlStateConnectionError, e);
+    return failed("Query execution", e);
   }
 
   public static SQLException badUpdate(Exception e) {
-    return new SQLException(format("Update execution failed: %s", e.getMessage()), SqlStateConnectionError, e);
+    return failed("Update execution", e);
   }
 
   public static SQLException badBatch(Exception e) {
-    return new SQLException(format("Batch execution failed: %s", e.getMessage()), SqlStateConnectionError, e);
+    return failed("Batch execution", e);
   }
 
   public static SQLException badExec(Exception e) {
-    return new SQLException(format("Execution failed: %s", e.getMessage()), SqlStateConnectionError, e);
+    return failed("Execution", e);
   }
 
   public static SQLException badState(String msg) {
@@ -227,6 +262,10 @@ public class L4Err {
     return new SQLException(msg, e);
   }
 
+  public static SQLException readOnly() {
+    return new SQLException("Connection is read-only", SqlStateReadOnly);
+  }
+
   public static SQLException rsClosed() {
     return new SQLException("ResultSet is closed", SqlStateGeneralError);
   }
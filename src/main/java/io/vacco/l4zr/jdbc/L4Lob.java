@@ -0,0 +1,673 @@
+package io.vacco.l4zr.jdbc;
+
+import io.vacco.l4zr.rqlite.*;
+import java.io.*;
+import java.sql.*;
+import java.util.*;
+
+import static io.vacco.l4zr.jdbc.L4Err.*;
+import static java.lang.String.format;
+
+/**
+ * Opt-in LOB locators. When {@link L4Options#lobLocatorLength} is set, or a column is
+ * listed in {@link L4Options#lazyLobColumns}, single-table reads that select the row id
+ * (<code>rowid</code>, <code>_rowid_</code> or <code>oid</code>) are rewritten so that
+ * long BLOB and text cells come back as NULL, plus a flag telling them apart from real
+ * NULLs. Those cells are then read through {@link Ref}, which fetches
+ * <code>substr(col, ?, ?)</code> ranges by row id when the application asks for them, so
+ * rows carrying large documents only transfer what is actually read.
+ *
+ * A statement qualifies when it is a single SELECT over one table, with no joins,
+ * compound operators or GROUP BY, and an explicit select list. Only columns selected by
+ * name are elided; expressions and aliases always come back whole. The result columns
+ * and declared types are learned once per server and SQL text, with a <code>LIMIT 0</code>
+ * probe that only runs for statements whose text already qualifies. Up to {@link #kMaxPlans}
+ * plans are kept. Results report the probed types until the plan is evicted, which happens
+ * when a rewritten query fails or comes back in another shape, so after altering a column's
+ * type in place, call {@link #evict} for the statements that read it.
+ *
+ * Locators read the row as it is when they are read, not as it was when the query ran.
+ * Text positions and lengths count characters the way SQLite does (code points).
+ */
+public class L4Lob {
+
+  public static final int kChunk = 1 << 16;
+  public static final int kMaxPlans = 256;
+
+  private static final Plan none = new Plan(null, null, null, null, -1, null);
+  private static final Map<List<String>, Plan> cache = new LinkedHashMap<>(64, 0.75f, true) {
+    @Override protected boolean removeEldestEntry(Map.Entry<List<String>, Plan> eldest) {
+      return size() > kMaxPlans;
+    }
+  };
+
+  /** Runs a locator query; implementations throw for errors and missing results. */
+  public interface Source {
+    L4Result query(L4Statement statement) throws SQLException;
+  }
+
+  public static Source source(L4Client client, L4Consistency consistency) {
+    return st -> {
+      L4Result result;
+      try {
+        result = client.query(consistency, st).first();
+      } catch (Exception e) {
+        throw badQuery(e);
+      }
+      if (result == null || result.error != null) {
+        throw badQuery(result != null ? result.error : "missing result");
+      }
+      return result;
+    };
+  }
+
+  private static String quote(String name) {
+    return '"' + name.replace("\"", "\"\"") + '"';
+  }
+
+  /** A statement's top-level tokens. Parenthesized groups collapse into one "()" token, literals into "'". */
+  private static final class Tk {
+    final String text;
+    final boolean name, quoted;
+    final int start, end;
+
+    Tk(String text, boolean name, boolean quoted, int start, int end) {
+      this.text = text;
+      this.name = name;
+      this.quoted = quoted;
+      this.start = start;
+      this.end = end;
+    }
+
+    boolean is(String keyword) {
+      return name && !quoted && text.equalsIgnoreCase(keyword);
+    }
+
+    boolean isAny(String ... keywords) {
+      for (var kw : keywords) {
+        if (is(kw)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static boolean isWordChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+  }
+
+  private static int skipQuoted(String sql, int i, char close) {
+    var end = sql.indexOf(close, i + 1);
+    return end == -1 ? sql.length() - 1 : end;
+  }
+
+  private static List<Tk> tokens(String sql) {
+    var out = new ArrayList<Tk>();
+    var n = sql.length();
+    for (int i = 0; i < n; i++) {
+      var c = sql.charAt(i);
+      var start = i;
+      if (Character.isWhitespace(c)) {
+        continue;
+      } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+        var end = sql.indexOf('\n', i + 2);
+        i = end == -1 ? n : end;
+      } else if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {
+        var end = sql.indexOf("*/", i + 2);
+        i = end == -1 ? n : end + 1;
+      } else if (c == '\'') {
+        i = skipQuoted(sql, i, c);
+        out.add(new Tk("'", false, false, start, i + 1));
+      } else if (c == '"' || c == '`' || c == '[') {
+        i = skipQuoted(sql, i, c == '[' ? ']' : c);
+        var text = sql.substring(start + 1, i);
+        out.add(new Tk(c == '"' ? text.replace("\"\"", "\"") : text, true, true, start, i + 1));
+      } else if (c == '(') {
+        var depth = 1;
+        while (depth > 0 && ++i < n) {
+          var d = sql.charAt(i);
+          if (d == '\'' || d == '"' || d == '`') {
+            i = skipQuoted(sql, i, d);
+          } else if (d == '(') {
+            depth++;
+          } else if (d == ')') {
+            depth--;
+          }
+        }
+        out.add(new Tk("()", false, false, start, Math.min(i + 1, n)));
+      } else if (isWordChar(c)) {
+        while (i + 1 < n && isWordChar(sql.charAt(i + 1))) {
+          i++;
+        }
+        out.add(new Tk(sql.substring(start, i + 1), true, false, start, i + 1));
+      } else {
+        out.add(new Tk(String.valueOf(c), false, false, start, i + 1));
+      }
+    }
+    return out;
+  }
+
+  /** @return the index past a possibly qualified name starting at <code>i</code>, or -1. */
+  private static int skipName(List<Tk> tks, int i, int end) {
+    if (i >= end || !tks.get(i).name) {
+      return -1;
+    }
+    while (i + 2 < end && tks.get(i + 1).text.equals(".") && tks.get(i + 2).name) {
+      i += 2;
+    }
+    return i + 1;
+  }
+
+  private static boolean isRowid(String name) {
+    return name.equals("rowid") || name.equals("_rowid_") || name.equals("oid");
+  }
+
+  /** What a statement's text alone says about it: the table it reads and the columns it selects by name. */
+  private static final class Shape {
+    final String      stmt, table;
+    final Set<String> byName;
+
+    private Shape(String stmt, String table, Set<String> byName) {
+      this.stmt = stmt;
+      this.table = table;
+      this.byName = byName;
+    }
+
+    /** @return the shape of <code>stmt</code>, or null if it can't use locators whatever its columns are. */
+    static Shape of(String stmt) {
+      var tks = tokens(stmt);
+      var n = tks.size();
+      if (n == 0 || !tks.get(0).is("SELECT")) {
+        return null;
+      }
+      var from = -1;
+      for (int i = 1; i < n && from == -1; i++) {
+        from = tks.get(i).is("FROM") ? i : -1;
+      }
+      if (from == -1) {
+        return null;
+      }
+
+      var byName = new HashSet<String>();
+      var i = tks.get(1).isAny("DISTINCT", "ALL") ? 2 : 1;
+      while (i < from) {
+        var end = i;
+        while (end < from && !tks.get(end).text.equals(",")) {
+          if (tks.get(end).text.equals("*")) {
+            return null;
+          }
+          end++;
+        }
+        if (skipName(tks, i, end) == end) {
+          byName.add(tks.get(end - 1).text.toLowerCase());
+        }
+        i = end + 1;
+      }
+      if (byName.stream().noneMatch(L4Lob::isRowid)) {
+        return null;
+      }
+
+      var t = skipName(tks, from + 1, n);
+      if (t == -1) {
+        return null;
+      }
+      var table = stmt.substring(tks.get(from + 1).start, tks.get(t - 1).end);
+      if (t < n && tks.get(t).is("AS")) {
+        t += 2;
+      } else if (t < n && tks.get(t).name && !tks.get(t).isAny(
+        "WHERE", "ORDER", "LIMIT", "GROUP", "HAVING", "WINDOW", "JOIN", "NATURAL", "LEFT", "RIGHT",
+        "FULL", "INNER", "CROSS", "INDEXED", "NOT", "UNION", "INTERSECT", "EXCEPT")) {
+        t += 1;
+      }
+      if (t < n && !tks.get(t).isAny("WHERE", "ORDER", "LIMIT")) {
+        return null; // also rules out a second table after a comma
+      }
+      for (int k = t; k < n; k++) {
+        if (tks.get(k).isAny("JOIN", "UNION", "INTERSECT", "EXCEPT", "GROUP", "HAVING", "WINDOW")) {
+          return null;
+        }
+      }
+      return new Shape(stmt, table, byName);
+    }
+  }
+
+  /**
+   * The shape of one qualifying statement: the table it reads, its result columns and
+   * declared types, the row id column and which columns were selected by name.
+   */
+  public static class Plan {
+
+    public final String       stmt, table;
+    public final List<String> names, types;
+    public final int          rowid;
+    private final boolean[]   named;
+
+    private Plan(String stmt, String table, List<String> names, List<String> types, int rowid, boolean[] named) {
+      this.stmt = stmt;
+      this.table = table;
+      this.names = names;
+      this.types = types;
+      this.rowid = rowid;
+      this.named = named;
+    }
+
+    /** @return the probe that learns the result columns of <code>stmt</code>. */
+    public static String probe(String stmt) {
+      return format("SELECT * FROM (%s) LIMIT 0", stmt);
+    }
+
+    /**
+     * @param stmt a single SQL statement.
+     * @param probe the result of running {@link #probe(String)}.
+     * @return a plan, or null if <code>stmt</code> can't use locators.
+     */
+    public static Plan of(String stmt, L4Result probe) {
+      return of(Shape.of(stmt), probe);
+    }
+
+    private static Plan of(Shape shape, L4Result probe) {
+      if (shape == null || probe == null || probe.error != null || probe.columns == null || probe.types == null) {
+        return null;
+      }
+      var names = new ArrayList<>(probe.columns);
+      var seen = new HashSet<String>();
+      var rowid = -1;
+      var named = new boolean[names.size()];
+      for (int c = 0; c < names.size(); c++) {
+        var name = names.get(c).toLowerCase();
+        if (!seen.add(name)) {
+          return null;
+        }
+        named[c] = shape.byName.contains(name);
+        if (named[c] && isRowid(name)) {
+          rowid = c;
+        }
+      }
+      return rowid == -1 ? null : new Plan(shape.stmt, shape.table, names, new ArrayList<>(probe.types), rowid, named);
+    }
+
+    private static boolean isLobType(String type) {
+      if (type == null || type.isEmpty()) {
+        return false;
+      }
+      var jt = L4Jdbc.getJdbcType(type);
+      return jt == Types.BLOB || jt == Types.CLOB || jt == Types.NCLOB
+        || jt == Types.VARCHAR || jt == Types.NVARCHAR;
+    }
+
+    /**
+     * @return the length past which cells of column <code>c</code> are left on the server
+     *         (-1 to always leave them), or null to always return them whole.
+     */
+    private Long limitOf(int c) {
+      if (!named[c] || c == rowid) {
+        return null;
+      }
+      if (L4Options.lazyLobColumns.contains(names.get(c).toLowerCase())) {
+        return -1L;
+      }
+      return L4Options.lobLocatorLength > 0 && isLobType(types.get(c)) ? L4Options.lobLocatorLength : null;
+    }
+
+    /**
+     * @return <code>statement</code> rewritten to leave long LOB cells on the server, or
+     *         null if the current options leave every column whole.
+     */
+    public Query wrap(L4Statement statement) {
+      var cols = new StringJoiner(", ");
+      var flags = new StringJoiner(", ");
+      var lobs = new ArrayList<Integer>();
+      for (int c = 0; c < names.size(); c++) {
+        var col = quote(names.get(c));
+        var limit = limitOf(c);
+        if (limit == null) {
+          cols.add(col);
+        } else {
+          var test = format("length(%s) > %d", col, limit);
+          cols.add(format("CASE WHEN %s THEN NULL ELSE %s END AS %s", test, col, col));
+          flags.add(test);
+          lobs.add(c);
+        }
+      }
+      if (lobs.isEmpty()) {
+        return null;
+      }
+      var sql = format("SELECT %s, %s FROM (%s)", cols, flags, stmt);
+      return new Query(this, statement.withSql(sql), lobs.stream().mapToInt(Integer::intValue).toArray());
+    }
+  }
+
+  /** A rewritten statement, and the columns whose cells it may leave on the server. */
+  public static class Query {
+
+    public final Plan        plan;
+    public final L4Statement statement;
+    private final int[]      lobs;
+
+    private Query(Plan plan, L4Statement statement, int[] lobs) {
+      this.plan = plan;
+      this.statement = statement;
+      this.lobs = lobs;
+    }
+
+    private static boolean isSet(List<String> row, int i) {
+      if (row instanceof L4Row && ((L4Row) row).isLong(i)) {
+        return ((L4Row) row).getLong(i) != 0;
+      }
+      return "1".equals(row.get(i));
+    }
+
+    private static long rowId(List<String> row, int i) {
+      if (row instanceof L4Row && ((L4Row) row).isLong(i)) {
+        return ((L4Row) row).getLong(i);
+      }
+      return Long.parseLong(row.get(i));
+    }
+
+    /**
+     * Drops the flag columns from <code>result</code> and restores the declared column types.
+     *
+     * @return the cells that were left on the server, read through <code>source</code>, or
+     *         null if <code>result</code> doesn't have the expected shape; the original
+     *         statement should then be run instead.
+     */
+    public Cells locate(L4Result result, Source source) {
+      var m = plan.names.size();
+      if (result == null || result.error != null || result.columns == null || result.columns.size() != m + lobs.length) {
+        return null;
+      }
+      result.columns = new ArrayList<>(result.columns.subList(0, m));
+      result.types = new ArrayList<>(plan.types);
+      var rows = result.values.size();
+      var rowIds = new long[rows];
+      var elided = new BitSet();
+      for (int r = 0; r < rows; r++) {
+        var row = result.values.get(r);
+        for (int j = 0; j < lobs.length; j++) {
+          if (isSet(row, m + j)) {
+            elided.set(r * lobs.length + j);
+            rowIds[r] = rowId(row, plan.rowid);
+          }
+        }
+        row.subList(m, row.size()).clear();
+      }
+      return new Cells(this, source, rowIds, elided);
+    }
+  }
+
+  /** The cells of one result that were left on the server. */
+  public static class Cells {
+
+    private final Query  query;
+    private final Source source;
+    private final long[] rowIds;
+    private final BitSet elided;
+
+    private Cells(Query query, Source source, long[] rowIds, BitSet elided) {
+      this.query = query;
+      this.source = source;
+      this.rowIds = rowIds;
+      this.elided = elided;
+    }
+
+    private int bit(int row, int column) {
+      for (int j = 0; j < query.lobs.length; j++) {
+        if (query.lobs[j] == column) {
+          return row * query.lobs.length + j;
+        }
+      }
+      return -1;
+    }
+
+    /** @return true if cell (<code>row</code>, <code>column</code>), both 0-based, was left on the server. */
+    public boolean isElided(int row, int column) {
+      var bit = bit(row, column);
+      return bit != -1 && elided.get(bit);
+    }
+
+    /** Marks a cell as read back into its row. */
+    public void clear(int row, int column) {
+      var bit = bit(row, column);
+      if (bit != -1) {
+        elided.clear(bit);
+      }
+    }
+
+    public Ref ref(int row, int column, boolean binary) {
+      var plan = query.plan;
+      return new Ref(source, plan.table, plan.names.get(column), plan.names.get(plan.rowid), rowIds[row], binary);
+    }
+  }
+
+  /**
+   * One LOB cell on the server, read by row id. Binary refs address the value as bytes,
+   * text refs as characters.
+   */
+  public static class Ref {
+
+    private final Source source;
+    private final String table, column, rowidColumn, cast;
+    private final long   rowid;
+    private long         length = -1;
+
+    public Ref(Source source, String table, String column, String rowidColumn, long rowid, boolean binary) {
+      this.source = Objects.requireNonNull(source);
+      this.table = Objects.requireNonNull(table);
+      this.column = quote(column);
+      this.rowidColumn = quote(rowidColumn);
+      this.rowid = rowid;
+      this.cast = binary ? "BLOB" : "TEXT";
+    }
+
+    private String cell(String expr, Object ... params) throws SQLException {
+      var sql = format("SELECT %s FROM %s WHERE %s = ?", expr, table, rowidColumn);
+      var st = new L4Statement().sql(sql);
+      for (var p : params) {
+        st.positionalParams.add(p);
+      }
+      st.positionalParams.add(rowid);
+      var result = source.query(st);
+      if (result.values == null || result.values.isEmpty()) {
+        throw generalError(format("Row [%d] of %s no longer exists", rowid, table));
+      }
+      return result.values.get(0).get(0);
+    }
+
+    private String range(long pos, int length) throws SQLException {
+      if (pos < 1 || length < 0) {
+        throw badParam(format("Invalid LOB range: position [%d], length [%d]", pos, length));
+      }
+      var value = cell(format("substr(CAST(%s AS %s), ?, ?)", column, cast), pos, length);
+      return value != null ? value : "";
+    }
+
+    /** @return the full cell, as the query would have returned it. */
+    public String value() throws SQLException {
+      return cell(column);
+    }
+
+    public long length() throws SQLException {
+      if (length == -1) {
+        var value = cell(format("length(CAST(%s AS %s))", column, cast));
+        length = value != null ? Long.parseLong(value) : 0;
+      }
+      return length;
+    }
+
+    public byte[] bytes(long pos, int length) throws SQLException {
+      var value = range(pos, length);
+      var bytes = L4Json.fromB64(value);
+      if (bytes == null) {
+        throw badB64(-1, value, null);
+      }
+      return bytes;
+    }
+
+    public String text(long pos, int length) throws SQLException {
+      return range(pos, length);
+    }
+
+    /** @return a stream over <code>length</code> bytes from <code>pos</code> (to the end if negative), fetched {@link #kChunk} bytes at a time. */
+    public InputStream stream(long pos, long length) {
+      return new InputStream() {
+        private long   next = pos;
+        private long   left = length < 0 ? Long.MAX_VALUE : length;
+        private byte[] buf = new byte[0];
+        private int    off;
+
+        private boolean fill() throws IOException {
+          if (off < buf.length) {
+            return true;
+          }
+          if (left <= 0) {
+            return false;
+          }
+          var want = (int) Math.min(kChunk, left);
+          try {
+            buf = bytes(next, want);
+          } catch (SQLException e) {
+            throw new IOException(e);
+          }
+          off = 0;
+          next += buf.length;
+          left = buf.length < want ? 0 : left - buf.length;
+          return buf.length > 0;
+        }
+
+        @Override public int read() throws IOException {
+          return fill() ? buf[off++] & 0xff : -1;
+        }
+
+        @Override public int read(byte[] b, int o, int n) throws IOException {
+          if (n == 0) {
+            return 0;
+          }
+          if (!fill()) {
+            return -1;
+          }
+          var k = Math.min(n, buf.length - off);
+          System.arraycopy(buf, off, b, o, k);
+          off += k;
+          return k;
+        }
+      };
+    }
+
+    /** @return a reader over <code>length</code> characters from <code>pos</code> (to the end if negative), fetched {@link #kChunk} at a time. */
+    public Reader reader(long pos, long length) {
+      return new Reader() {
+        private long   next = pos;
+        private long   left = length < 0 ? Long.MAX_VALUE : length;
+        private String buf = "";
+        private int    off;
+
+        private boolean fill() throws IOException {
+          if (off < buf.length()) {
+            return true;
+          }
+          if (left <= 0) {
+            return false;
+          }
+          var want = (int) Math.min(kChunk, left);
+          try {
+            buf = text(next, want);
+          } catch (SQLException e) {
+            throw new IOException(e);
+          }
+          off = 0;
+          var chars = buf.codePointCount(0, buf.length());
+          next += chars;
+          left = chars < want ? 0 : left - chars;
+          return !buf.isEmpty();
+        }
+
+        @Override public int read(char[] b, int o, int n) throws IOException {
+          if (n == 0) {
+            return 0;
+          }
+          if (!fill()) {
+            return -1;
+          }
+          var k = Math.min(n, buf.length() - off);
+          buf.getChars(off, off + k, b, o);
+          off += k;
+          return k;
+        }
+
+        @Override public void close() {
+          left = 0;
+          buf = "";
+        }
+      };
+    }
+  }
+
+  /**
+   * @return a plan for the single read in <code>lex</code>, probing its columns the first
+   *         time it is seen on this client's server, or null if locators are off or the
+   *         statement doesn't qualify.
+   */
+  public static Plan plan(L4Client client, L4Call call, L4Consistency consistency, L4Sql lex, L4Statement statement) {
+    if (L4Options.lobLocatorLength <= 0 && L4Options.lazyLobColumns.isEmpty()) {
+      return null;
+    }
+    if (!lex.select || lex.statements.length != 1 || hasStreams(statement)) {
+      return null;
+    }
+    var key = List.of(client.getBaseUrl(), lex.sql);
+    Plan plan;
+    synchronized (cache) {
+      plan = cache.get(key);
+    }
+    if (plan == null) {
+      var stmt = lex.statements[0];
+      var shape = Shape.of(stmt);
+      if (shape != null) {
+        L4Result probe;
+        try {
+          probe = client.query(call, consistency, statement.withSql(Plan.probe(stmt))).first();
+        } catch (Exception e) {
+          return null; // let the statement itself report the problem
+        }
+        if (probe == null || probe.error != null) {
+          return null;
+        }
+        plan = Plan.of(shape, probe);
+      }
+      synchronized (cache) {
+        cache.put(key, plan != null ? plan : none);
+      }
+    }
+    return plan != none ? plan : null;
+  }
+
+  /** Forgets the plan for <code>lex</code> on this client's server, e.g. after its table was altered. */
+  public static void evict(L4Client client, L4Sql lex) {
+    synchronized (cache) {
+      cache.remove(List.of(client.getBaseUrl(), lex.sql));
+    }
+  }
+
+  public static void clearCache() {
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+
+  /* Stream parameters can only be sent once, and the probe would use them up. */
+  private static boolean hasStreams(L4Statement statement) {
+    for (int i = 0; i < statement.positionalParams.size(); i++) {
+      if (statement.positionalParams.get(i) instanceof L4BinaryStream) {
+        return true;
+      }
+    }
+    for (var v : statement.namedParams.values()) {
+      if (v instanceof L4BinaryStream) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
@@ -7,4 +7,8 @@ public class L4NClob extends L4Clob implements NClob {
   public L4NClob() throws SQLException {
     super();
   }
+
+  public L4NClob(L4Lob.Ref ref) throws SQLException {
+    super(ref);
+  }
 }
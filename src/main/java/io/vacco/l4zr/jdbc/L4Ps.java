@@ -18,7 +18,9 @@ import static io.vacco.l4zr.jdbc.L4Jdbc.*;
 
 public class L4Ps extends L4St implements PreparedStatement {
 
-  private L4Statement statement;
+  private final L4Sql lex;
+  private final L4Statement statement;
+  private final L4Batch rows;
   private boolean resultSetAvailable = false;
 
   public L4Ps(L4Client client, L4Conn conn, String sql) throws SQLException {
@@ -26,7 +28,9 @@ public class L4Ps extends L4St implements PreparedStatement {
     if (sql == null || sql.trim().isEmpty()) {
       throw badStatement();
     }
+    this.lex = L4Sql.of(sql);
     this.statement = new L4Statement().sql(sql);
+    this.rows = new L4Batch(sql);
   }
 
   public L4Ps(L4Client client, String sql) throws SQLException {
@@ -41,16 +45,19 @@ public class L4Ps extends L4St implements PreparedStatement {
 
   private void executeInternal() throws SQLException {
     checkClosed();
+    checkWritable(!lex.select);
     closeCurrentResultSet();
     currentResultIndex = -1;
     try {
-      var isSelect = isSelect(statement.sql);
-      currentResponse = isSelect ? client.query(statement) : client.execute(isAutoCommit(), statement);
+      lobs = null;
+      currentResponse = lex.select
+        ? query(lex, statement)
+        : client.execute(call.reset(), isAutoCommit(), lex.idempotent, statement);
       var result = checkResult(currentResponse.first());
       currentResultIndex = 0;
-      resultSetAvailable = isSelect && result.columns != null && !result.columns.isEmpty();
+      resultSetAvailable = (lex.select || lex.returning) && result.columns != null && !result.columns.isEmpty();
       if (resultSetAvailable) {
-        currentResultSet = new L4Rs(result, this).clampTo(maxRows);
+        currentResultSet = new L4Rs(result, this).withLobs(lobs).clampTo(maxRows);
         if (closeOnCompletion) {
           isClosed = true;
         }
@@ -62,7 +69,7 @@ public class L4Ps extends L4St implements PreparedStatement {
 
   @Override public ResultSet executeQuery() throws SQLException {
     checkClosed();
-    if (!isSelect(statement.sql)) {
+    if (!lex.select && !lex.returning) {
       throw generalError("Statement is not a query");
     }
     executeInternal();
@@ -74,7 +81,7 @@ public class L4Ps extends L4St implements PreparedStatement {
 
   @Override public int executeUpdate() throws SQLException {
     checkClosed();
-    if (isSelect(statement.sql)) {
+    if (lex.select) {
       throw generalError("Statement is a query");
     }
     executeInternal();
@@ -90,18 +97,19 @@ public class L4Ps extends L4St implements PreparedStatement {
 
   @Override public void addBatch() throws SQLException {
     checkClosed();
-    batch.add(statement);
-    statement = new L4Statement().sql(statement.sql);
+    rows.add(statement.positionalParams);
+    statement.positionalParams.clear();
   }
 
   @Override public int[] executeBatch() throws SQLException {
     checkClosed();
-    if (batch.isEmpty()) {
+    if (rows.isEmpty()) {
       return new int[0];
     }
+    checkWritable(true);
     try {
-      currentResponse = client.execute(isAutoCommit(), batch.toArray(new L4Statement[0]));
-      batch.clear();
+      currentResponse = client.execute(call.reset(), isAutoCommit(), lex.idempotent, rows);
+      rows.clear();
       var updateCounts = new int[currentResponse.results.size()];
       for (int i = 0; i < currentResponse.results.size(); i++) {
         var result = currentResponse.results.get(i);
@@ -112,16 +120,21 @@ public class L4Ps extends L4St implements PreparedStatement {
       }
       return updateCounts;
     } catch (Exception e) {
-      var counts = new int[batch.size()];
+      var counts = new int[rows.size()];
       Arrays.fill(counts, EXECUTE_FAILED);
-      batch.clear();
+      rows.clear();
       throw new BatchUpdateException("Batch execution failed", SqlStateConnectionError, 0, counts, e);
     }
   }
 
   @Override public void clearBatch() throws SQLException {
     checkClosed();
-    batch.clear();
+    rows.clear();
+  }
+
+  @Override public void close() throws SQLException {
+    rows.clear();
+    super.close();
   }
 
   @Override public void setNull(int parameterIndex, int sqlType) throws SQLException {
@@ -176,7 +189,7 @@ public class L4Ps extends L4St implements PreparedStatement {
 
   @Override public void setBytes(int parameterIndex, byte[] x) throws SQLException {
     checkClosed();
-    statement.withPositionalParam(parameterIndex - 1, x != null ? Base64.getEncoder().encodeToString(x) : null);
+    statement.withPositionalParam(parameterIndex - 1, x != null ? x.clone() : null);
   }
 
   @Override public void setDate(int parameterIndex, Date x) throws SQLException {
@@ -229,8 +242,7 @@ public class L4Ps extends L4St implements PreparedStatement {
       return;
     }
     try {
-      var bytes = x.readNBytes(length);
-      statement.withPositionalParam(parameterIndex - 1, Base64.getEncoder().encodeToString(bytes));
+      statement.withPositionalParam(parameterIndex - 1, new L4BinaryStream(x, length));
     } catch (IOException e) {
       throw badParam(e);
     }
@@ -238,7 +250,7 @@ public class L4Ps extends L4St implements PreparedStatement {
 
   @Override public void clearParameters() throws SQLException {
     checkClosed();
-    statement.withPositionalParams();
+    statement.positionalParams.clear();
   }
 
   @Override public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
@@ -248,7 +260,13 @@ public class L4Ps extends L4St implements PreparedStatement {
 
   @Override public void setObject(int parameterIndex, Object x) throws SQLException {
     checkClosed();
-    statement.withPositionalParam(parameterIndex - 1, x);
+    if (x instanceof Blob) {
+      setBlob(parameterIndex, (Blob) x);
+    } else if (x instanceof Clob) {
+      setClob(parameterIndex, (Clob) x);
+    } else {
+      statement.withPositionalParam(parameterIndex - 1, x);
+    }
   }
 
   @Override public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
@@ -282,9 +300,8 @@ public class L4Ps extends L4St implements PreparedStatement {
       return;
     }
     try {
-      var bytes = x.getBytes(1, (int) x.length());
-      statement.withPositionalParam(parameterIndex - 1, Base64.getEncoder().encodeToString(bytes));
-    } catch (SQLException e) {
+      statement.withPositionalParam(parameterIndex - 1, new L4BinaryStream(x.getBinaryStream(), x.length()));
+    } catch (SQLException | IOException e) {
       throw badParam(e);
     }
   }
@@ -385,7 +402,7 @@ public class L4Ps extends L4St implements PreparedStatement {
 
   @Override public ParameterMetaData getParameterMetaData() throws SQLException {
     checkClosed();
-    return new L4PsPm(statement); // TODO possible enhancement for rqlite itself
+    return new L4PsPm(statement, lex.paramCount); // TODO possible enhancement for rqlite itself
   }
 
   @Override public void setRowId(int parameterIndex, RowId x) throws SQLException {
@@ -457,8 +474,7 @@ public class L4Ps extends L4St implements PreparedStatement {
       return;
     }
     try {
-      var bytes = inputStream.readNBytes((int) length);
-      statement.withPositionalParam(parameterIndex - 1, Base64.getEncoder().encodeToString(bytes));
+      statement.withPositionalParam(parameterIndex - 1, new L4BinaryStream(inputStream, length));
     } catch (IOException e) {
       throw badParam(e);
     }
@@ -518,8 +534,7 @@ public class L4Ps extends L4St implements PreparedStatement {
       return;
     }
     try {
-      var bytes = x.readNBytes((int) length);
-      statement.withPositionalParam(parameterIndex - 1, Base64.getEncoder().encodeToString(bytes));
+      statement.withPositionalParam(parameterIndex - 1, new L4BinaryStream(x, length));
     } catch (IOException e) {
       throw badParam(e);
     }
@@ -565,8 +580,7 @@ public class L4Ps extends L4St implements PreparedStatement {
       return;
     }
     try {
-      var bytes = x.readAllBytes();
-      statement.withPositionalParam(parameterIndex - 1, Base64.getEncoder().encodeToString(bytes));
+      statement.withPositionalParam(parameterIndex - 1, new L4BinaryStream(x, -1));
     } catch (IOException e) {
       throw badParam(e);
     }
@@ -624,8 +638,7 @@ public class L4Ps extends L4St implements PreparedStatement {
       return;
     }
     try {
-      var bytes = inputStream.readAllBytes();
-      statement.withPositionalParam(parameterIndex - 1, Base64.getEncoder().encodeToString(bytes));
+      statement.withPositionalParam(parameterIndex - 1, new L4BinaryStream(inputStream, -1));
     } catch (IOException e) {
       throw badParam(e);
     }
@@ -686,7 +699,8 @@ public class L4Ps extends L4St implements PreparedStatement {
     if (iface == null) {
       throw badInterface();
     }
-    if (iface == PreparedStatement.class || iface == Statement.class || iface == Wrapper.class) {
+    if (iface == PreparedStatement.class || iface == Statement.class
+      || iface == Wrapper.class || iface == L4Consistent.class) {
       return iface.cast(this);
     }
     throw badUnwrap(iface);
@@ -696,7 +710,8 @@ public class L4Ps extends L4St implements PreparedStatement {
     if (iface == null) {
       throw badInterface();
     }
-    return iface == PreparedStatement.class || iface == Statement.class || iface == Wrapper.class;
+    return iface == PreparedStatement.class || iface == Statement.class
+      || iface == Wrapper.class || iface == L4Consistent.class;
   }
 
 }
@@ -10,9 +10,15 @@ import static io.vacco.l4zr.jdbc.L4Err.*;
 public class L4PsPm implements ParameterMetaData {
 
   private final L4Statement statement;
+  private final int paramCount;
 
-  public L4PsPm(L4Statement statement) {
+  public L4PsPm(L4Statement statement, int paramCount) {
     this.statement = Objects.requireNonNull(statement);
+    this.paramCount = paramCount;
+  }
+
+  public L4PsPm(L4Statement statement) {
+    this(statement, 0);
   }
 
   private Object paramAt(int paramIdx) {
@@ -24,7 +30,7 @@ public class L4PsPm implements ParameterMetaData {
   }
 
   @Override public int getParameterCount() {
-    return statement.positionalParams.size();
+    return Math.max(paramCount, statement.positionalParams.size());
   }
 
   @Override public int isNullable(int param) {
@@ -1,6 +1,8 @@
 package io.vacco.l4zr.jdbc;
 
+import io.vacco.l4zr.rqlite.L4Json;
 import io.vacco.l4zr.rqlite.L4Result;
+import io.vacco.l4zr.rqlite.L4Row;
 import java.io.*;
 import java.math.BigDecimal;
 import java.net.URL;
@@ -14,12 +16,16 @@ import static java.lang.String.format;
 
 public class L4Rs implements ResultSet {
 
+  private static final int[] intSources = {Types.INTEGER, Types.TINYINT, Types.SMALLINT, Types.BOOLEAN, Types.NUMERIC};
+  private static final int[] longSources = {Types.INTEGER, Types.BIGINT, Types.TINYINT, Types.SMALLINT, Types.BOOLEAN, Types.NUMERIC};
+
   public  final L4Result result;
   private final L4RsMeta meta;
   private final Statement statement;
   private int currentRow = -1; // Before first row
   private boolean isClosed = false;
   private boolean wasNull = false;
+  private L4Lob.Cells lobs;
 
   public L4Rs(L4Result result, Statement statement) {
     this.result = Objects.requireNonNull(result);
@@ -40,6 +46,33 @@ public class L4Rs implements ResultSet {
     return this;
   }
 
+  /** Attaches the cells that an {@link L4Lob} rewrite left on the server. */
+  public L4Rs withLobs(L4Lob.Cells lobs) {
+    this.lobs = lobs;
+    return this;
+  }
+
+  /** Reads a cell left on the server back into its row, so it converts like any other. */
+  private void resolve(int columnIndex) throws SQLException {
+    if (lobs != null && lobs.isElided(currentRow, columnIndex - 1)) {
+      var value = lobs.ref(currentRow, columnIndex - 1, meta.getColumnType(columnIndex) == Types.BLOB).value();
+      result.values.get(currentRow).set(columnIndex - 1, value);
+      lobs.clear(currentRow, columnIndex - 1);
+    }
+  }
+
+  /** @return a locator for a cell left on the server, or null if the row holds it. */
+  private L4Lob.Ref lobRef(int columnIndex, boolean binary) throws SQLException {
+    checkClosed();
+    checkRow(currentRow, result, isClosed);
+    checkColumn(columnIndex, result);
+    if (lobs == null || !lobs.isElided(currentRow, columnIndex - 1)) {
+      return null;
+    }
+    wasNull = false;
+    return lobs.ref(currentRow, columnIndex - 1, binary);
+  }
+
   @Override public boolean next() throws SQLException {
     checkClosed();
     if (currentRow + 1 < result.values.size()) {
@@ -70,6 +103,7 @@ public class L4Rs implements ResultSet {
     checkClosed();
     checkRow(currentRow, result, isClosed);
     checkColumn(columnIndex, result);
+    resolve(columnIndex);
     var value = result.values.get(currentRow).get(columnIndex - 1);
     wasNull = (value == null || value.equals("null"));
     if (wasNull) {
@@ -80,6 +114,52 @@ public class L4Rs implements ResultSet {
     return convertValue(value, sourceJdbcType, targetJdbcType, columnIndex, scale, cal, type);
   }
 
+  /**
+   * @return the current row if the cell holds an integer that a column of one of
+   *         <code>sourceTypes</code> may be read as without parsing, otherwise null.
+   */
+  private L4Row longCell(int columnIndex, int[] sourceTypes) throws SQLException {
+    checkClosed();
+    checkRow(currentRow, result, isClosed);
+    checkColumn(columnIndex, result);
+    resolve(columnIndex);
+    var row = result.values.get(currentRow);
+    if (row instanceof L4Row && ((L4Row) row).isLong(columnIndex - 1)
+      && anyOf(meta.getColumnType(columnIndex), sourceTypes)) {
+      wasNull = false;
+      return (L4Row) row;
+    }
+    return null;
+  }
+
+  /**
+   * @return the decoded contents of a BLOB cell, decoded at most once per cell and
+   *         kept in the row, or null if the cell is null, isn't base64 or the row
+   *         can't keep it; callers then fall back to {@link #tryCast}. The array is
+   *         shared, so it must be copied before handing it to the application.
+   */
+  private byte[] blobCell(int columnIndex) throws SQLException {
+    checkClosed();
+    checkRow(currentRow, result, isClosed);
+    checkColumn(columnIndex, result);
+    resolve(columnIndex);
+    var row = result.values.get(currentRow);
+    if (!(row instanceof L4Row) || meta.getColumnType(columnIndex) != Types.BLOB) {
+      return null;
+    }
+    var cells = (L4Row) row;
+    var bytes = cells.getBytes(columnIndex - 1);
+    if (bytes == null) {
+      var value = cells.get(columnIndex - 1);
+      if (value == null || value.equals("null") || (bytes = L4Json.fromB64(value)) == null) {
+        return null;
+      }
+      cells.setBytes(columnIndex - 1, bytes);
+    }
+    wasNull = false;
+    return bytes;
+  }
+
   private Object tryCast(int columnIndex, int targetJdbcType, int scale, Calendar cal) throws SQLException {
     return tryCast(columnIndex, targetJdbcType, scale, cal, null);
   }
@@ -112,11 +192,22 @@ public class L4Rs implements ResultSet {
   }
 
   @Override public int getInt(int columnIndex) throws SQLException {
+    var row = longCell(columnIndex, intSources);
+    if (row != null) {
+      var v = row.getLong(columnIndex - 1);
+      if (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE) {
+        return (int) v;
+      }
+    }
     var value = tryCast(columnIndex, Types.INTEGER);
     return value != null ? (Integer) value : 0;
   }
 
   @Override public long getLong(int columnIndex) throws SQLException {
+    var row = longCell(columnIndex, longSources);
+    if (row != null) {
+      return row.getLong(columnIndex - 1);
+    }
     var value = tryCast(columnIndex, Types.BIGINT);
     return value != null ? (Long) value : 0L;
   }
@@ -136,7 +227,8 @@ public class L4Rs implements ResultSet {
   }
 
   @Override public byte[] getBytes(int columnIndex) throws SQLException {
-    return (byte[]) tryCast(columnIndex, Types.BLOB);
+    var bytes = blobCell(columnIndex);
+    return bytes != null ? bytes.clone() : (byte[]) tryCast(columnIndex, Types.BLOB);
   }
 
   @Override public Date getDate(int columnIndex) throws SQLException {
@@ -160,7 +252,8 @@ public class L4Rs implements ResultSet {
   }
 
   @Override public InputStream getBinaryStream(int columnIndex) throws SQLException {
-    return (InputStream) tryCast(columnIndex, L4Jdbc.BINARY_STREAM);
+    var bytes = blobCell(columnIndex);
+    return bytes != null ? new ByteArrayInputStream(bytes) : (InputStream) tryCast(columnIndex, L4Jdbc.BINARY_STREAM);
   }
 
   @Override public String getString(String columnLabel) throws SQLException {
@@ -472,7 +565,14 @@ public class L4Rs implements ResultSet {
   }
 
   @Override public Blob getBlob(int columnIndex) throws SQLException {
-    var bytes = (byte[]) tryCast(columnIndex, Types.BLOB);
+    var ref = lobRef(columnIndex, true);
+    if (ref != null) {
+      return new L4Blob(ref);
+    }
+    var bytes = blobCell(columnIndex);
+    if (bytes == null) {
+      bytes = (byte[]) tryCast(columnIndex, Types.BLOB);
+    }
     if (bytes == null) {
       return null;
     }
@@ -482,7 +582,8 @@ public class L4Rs implements ResultSet {
   }
 
   @Override public Clob getClob(int columnIndex) throws SQLException {
-    return (Clob) tryCast(columnIndex, CLOB_STREAM);
+    var ref = lobRef(columnIndex, false);
+    return ref != null ? new L4Clob(ref) : (Clob) tryCast(columnIndex, CLOB_STREAM);
   }
 
   @Override public Array getArray(int columnIndex) throws SQLException {
@@ -582,7 +683,8 @@ public class L4Rs implements ResultSet {
   @Override public void updateNClob(String columnLabel, NClob nClob) throws SQLException { noUpdateImpl(); }
 
   @Override public NClob getNClob(int columnIndex) throws SQLException {
-    return (NClob) tryCast(columnIndex, NCLOB_STREAM);
+    var ref = lobRef(columnIndex, false);
+    return ref != null ? new L4NClob(ref) : (NClob) tryCast(columnIndex, NCLOB_STREAM);
   }
 
   @Override public NClob getNClob(String columnLabel) throws SQLException {
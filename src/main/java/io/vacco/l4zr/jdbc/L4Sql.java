@@ -0,0 +1,283 @@
+package io.vacco.l4zr.jdbc;
+
+import io.vacco.l4zr.rqlite.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lexed form of a raw SQL string: top-level statements, read/write
+ * classification and positional parameter count. Instances are immutable
+ * and shared through a bounded concurrent cache keyed by SQL text, so repeated
+ * statements skip lexing entirely. Once the cache is full, an arbitrary entry
+ * makes room for each new one.
+ *
+ * A statement is a read when its leading keyword (after comments and any
+ * CTE prefix) is SELECT, VALUES or EXPLAIN, or when it is a PRAGMA that only
+ * reports: a bare <code>PRAGMA name</code>, or the call form of a pragma known
+ * to be query-only, e.g. <code>PRAGMA table_info(t)</code>. Everything else is a write and must go to the leader
+ * through <code>/db/execute</code>, including writes with a RETURNING clause.
+ *
+ * Block comments opening with <code>/*+</code> are read as consistency hints,
+ * e.g. <code>/*+ level=none freshness=2s *&#47; SELECT ...</code>. The word
+ * <code>idempotent</code> in a hint lets writes be retried after they may
+ * have reached the server.
+ */
+public class L4Sql {
+
+  public static final int kNone = 0, kRead = 1, kWrite = 2, kReturning = 3;
+
+  /** Pragmas whose argument selects what to report rather than a value to set. */
+  private static final Set<String> queryPragmas = Set.of(
+    "table_info", "table_xinfo", "table_list", "index_info", "index_xinfo", "index_list",
+    "foreign_key_list", "foreign_key_check", "integrity_check", "quick_check"
+  );
+
+  /** Pragmas that change the database even without an argument. */
+  private static final Set<String> actionPragmas = Set.of(
+    "optimize", "wal_checkpoint", "incremental_vacuum", "shrink_memory"
+  );
+
+  private static final Map<String, L4Sql> cache = new ConcurrentHashMap<>();
+
+  public final String   sql;
+  public final String[] statements;
+  public final boolean  select;
+  public final boolean  returning;
+  public final int      paramCount;
+  public final L4Consistency hint;
+  public final boolean  idempotent;
+
+  private L4Sql(String sql, String[] statements, boolean select, boolean returning,
+                int paramCount, L4Consistency hint, boolean idempotent) {
+    this.sql = sql;
+    this.statements = statements;
+    this.select = select;
+    this.returning = returning;
+    this.paramCount = paramCount;
+    this.hint = hint;
+    this.idempotent = idempotent;
+  }
+
+  public L4Statement[] toStatements() {
+    var out = new L4Statement[statements.length];
+    for (int i = 0; i < statements.length; i++) {
+      out[i] = new L4Statement().sql(statements[i]);
+    }
+    return out;
+  }
+
+  private static boolean at(String sql, int i, char c) {
+    return i < sql.length() && sql.charAt(i) == c;
+  }
+
+  private static boolean isWordChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+  }
+
+  private static boolean is(String sql, int start, int end, String keyword) {
+    return end - start == keyword.length() && sql.regionMatches(true, start, keyword, 0, keyword.length());
+  }
+
+  private static int skipQuoted(String sql, int i, char close) {
+    var end = sql.indexOf(close, i + 1);
+    return end == -1 ? sql.length() : end;
+  }
+
+  /** @return the index of the character closing the quoted literal or identifier at <code>i</code>, or -1 if none starts there. */
+  private static int skipLiteral(String sql, int i) {
+    var c = sql.charAt(i);
+    if (c == '\'' || c == '"' || c == '`') {
+      return skipQuoted(sql, i, c);
+    } else if (c == '[') {
+      return skipQuoted(sql, i, ']');
+    }
+    return -1;
+  }
+
+  /** @param i the index past the PRAGMA keyword. */
+  private static int classifyPragma(String stmt, int i) {
+    var n = stmt.length();
+    while (i < n && Character.isWhitespace(stmt.charAt(i))) {
+      i++;
+    }
+    var start = i; // past any schema prefix
+    while (i < n && (isWordChar(stmt.charAt(i)) || stmt.charAt(i) == '.')) {
+      if (stmt.charAt(i++) == '.') {
+        start = i;
+      }
+    }
+    var name = stmt.substring(start, i).toLowerCase();
+    while (i < n && Character.isWhitespace(stmt.charAt(i))) {
+      i++;
+    }
+    if (name.isEmpty()) {
+      return kWrite;
+    } else if (i == n || stmt.charAt(i) == ';') {
+      return actionPragmas.contains(name) ? kWrite : kRead;
+    } else if (stmt.charAt(i) == '(') {
+      return queryPragmas.contains(name) ? kRead : kWrite;
+    }
+    return kWrite;
+  }
+
+  public static int classify(String stmt) {
+    var n = stmt.length();
+    var depth = 0;
+    var first = true;
+    var inWith = false;
+    var write = false;
+    for (int i = 0; i < n; i++) {
+      var c = stmt.charAt(i);
+      var quoted = skipLiteral(stmt, i);
+      if (quoted != -1) {
+        i = quoted;
+      } else if (c == '-' && at(stmt, i + 1, '-')) {
+        var end = stmt.indexOf('\n', i + 2);
+        i = end == -1 ? n : end;
+      } else if (c == '/' && at(stmt, i + 1, '*')) {
+        var end = stmt.indexOf("*/", i + 2);
+        i = end == -1 ? n : end + 1;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (isWordChar(c)) {
+        var start = i;
+        while (i + 1 < n && isWordChar(stmt.charAt(i + 1))) {
+          i++;
+        }
+        var end = i + 1;
+        if (depth != 0) {
+          continue;
+        }
+        if (first) {
+          first = false;
+          if (is(stmt, start, end, "SELECT") || is(stmt, start, end, "VALUES") || is(stmt, start, end, "EXPLAIN")) {
+            return kRead;
+          } else if (is(stmt, start, end, "PRAGMA")) {
+            return classifyPragma(stmt, end);
+          } else if (is(stmt, start, end, "WITH")) {
+            inWith = true;
+          } else {
+            write = true;
+          }
+        } else if (inWith) {
+          if (is(stmt, start, end, "SELECT") || is(stmt, start, end, "VALUES")) {
+            return kRead;
+          } else if (is(stmt, start, end, "INSERT") || is(stmt, start, end, "UPDATE")
+            || is(stmt, start, end, "DELETE") || is(stmt, start, end, "REPLACE")) {
+            inWith = false;
+            write = true;
+          }
+        } else if (write && is(stmt, start, end, "RETURNING")) {
+          return kReturning;
+        }
+      }
+    }
+    return first ? kNone : kWrite;
+  }
+
+  private static boolean isIdempotent(String hint) {
+    for (var word : hint.trim().split("[\\s,]+")) {
+      if (word.equalsIgnoreCase("idempotent") || word.equalsIgnoreCase("idempotent=true")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void addStatement(List<String> out, String sql, int start, int end) {
+    var stmt = sql.substring(start, end).trim();
+    if (!stmt.isEmpty()) {
+      out.add(stmt);
+    }
+  }
+
+  public static L4Sql lex(String rawSql) {
+    if (rawSql == null) {
+      throw new IllegalArgumentException("SQL string cannot be null");
+    }
+    var sql = rawSql.trim();
+    var statements = new ArrayList<String>();
+    var paramCount = 0;
+    var start = 0;
+    L4Consistency hint = null;
+    var idempotent = false;
+    var n = sql.length();
+
+    for (int i = 0; i < n; i++) {
+      var c = sql.charAt(i);
+      var quoted = skipLiteral(sql, i);
+      if (quoted != -1) {
+        i = quoted;
+      } else if (c == '-' && at(sql, i + 1, '-')) {
+        var end = sql.indexOf('\n', i + 2);
+        i = end == -1 ? n : end;
+      } else if (c == '/' && at(sql, i + 1, '*')) {
+        var end = sql.indexOf("*/", i + 2);
+        if (end != -1 && at(sql, i + 2, '+')) {
+          var text = sql.substring(i + 3, end);
+          hint = L4Consistency.merge(hint, L4Consistency.parse(text));
+          idempotent = idempotent || isIdempotent(text);
+        }
+        i = end == -1 ? n : end + 1;
+      } else if (c == '?') {
+        var j = i + 1;
+        while (j < n && Character.isDigit(sql.charAt(j))) {
+          j++;
+        }
+        paramCount = j > i + 1
+          ? Math.max(paramCount, Integer.parseInt(sql.substring(i + 1, j)))
+          : paramCount + 1;
+        i = j - 1;
+      } else if (c == ';') {
+        addStatement(statements, sql, start, i);
+        start = i + 1;
+      }
+    }
+    if (start < n) {
+      addStatement(statements, sql, start, n);
+    }
+
+    var select = !statements.isEmpty();
+    var returning = false;
+    for (var stmt : statements) {
+      var kind = classify(stmt);
+      select = select && kind == kRead;
+      returning = returning || kind == kReturning;
+    }
+    return new L4Sql(rawSql, statements.toArray(new String[0]), select, returning, paramCount, hint, idempotent);
+  }
+
+  public static L4Sql of(String rawSql) {
+    if (rawSql == null) {
+      throw new IllegalArgumentException("SQL string cannot be null");
+    }
+    if (L4Options.sqlCacheSize <= 0) {
+      return lex(rawSql);
+    }
+    var parsed = cache.get(rawSql);
+    if (parsed != null) {
+      return parsed;
+    }
+    parsed = lex(rawSql);
+    if (cache.size() >= L4Options.sqlCacheSize) {
+      var it = cache.keySet().iterator();
+      if (it.hasNext()) {
+        it.next();
+        it.remove();
+      }
+    }
+    var known = cache.putIfAbsent(rawSql, parsed);
+    return known != null ? known : parsed;
+  }
+
+  public static void clearCache() {
+    cache.clear();
+  }
+
+  @Override public String toString() {
+    return String.format("[%s, select: %s, returning: %s, params: %d, hint: %s, idempotent: %s]", sql, select, returning, paramCount, hint, idempotent);
+  }
+
+}
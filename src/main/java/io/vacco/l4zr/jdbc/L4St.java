@@ -8,7 +8,7 @@ import static io.vacco.l4zr.jdbc.L4Jdbc.*;
 import static io.vacco.l4zr.jdbc.L4Err.*;
 import static io.vacco.l4zr.rqlite.L4Err.*;
 
-public class L4St implements Statement {
+public class L4St implements Statement, L4Consistent {
 
   protected final L4Conn            conn;
   protected final L4Client          client;
@@ -21,6 +21,9 @@ public class L4St implements Statement {
   protected int                     fetchSize = 0;
   protected boolean                 closeOnCompletion = false;
   protected int                     currentResultIndex = -1;
+  protected L4Consistency           consistency = null;
+  protected final L4Call            call = new L4Call();
+  protected L4Lob.Cells             lobs = null;
 
   public L4St(L4Client client, L4Conn conn) {
     this.client = Objects.requireNonNull(client);
@@ -41,6 +44,12 @@ public class L4St implements Statement {
     }
   }
 
+  protected void checkWritable(boolean write) throws SQLException {
+    if (write && client.isReadOnly()) {
+      throw readOnly();
+    }
+  }
+
   protected void closeCurrentResultSet() throws SQLException {
     if (currentResultSet != null && !currentResultSet.isClosed()) {
       currentResultSet.close();
@@ -48,10 +57,34 @@ public class L4St implements Statement {
     currentResultSet = null;
   }
 
+  /**
+   * Runs a single read, through an {@link L4Lob} rewrite when one applies; the cells
+   * it leaves on the server are kept in {@link #lobs} for the next result set.
+   */
+  protected L4Response query(L4Sql lex, L4Statement statement) {
+    var c = L4Consistency.merge(lex.hint, consistency);
+    lobs = null;
+    call.reset();
+    var plan = L4Lob.plan(client, call, c, lex, statement);
+    var query = plan != null ? plan.wrap(statement) : null;
+    if (query != null) {
+      var res = client.query(call, c, query.statement);
+      lobs = query.locate(res.first(), L4Lob.source(client, c));
+      if (lobs != null) {
+        return res;
+      }
+      L4Lob.evict(client, lex);
+    }
+    return client.query(call, c, statement);
+  }
+
   private L4Response runRaw(String sql) {
-    var sel = isSelect(sql);
-    var sta = split(sql);
-    var res = sel ? client.query(sta) : client.execute(isAutoCommit(), sta);
+    lobs = null;
+    var lex = L4Sql.of(sql);
+    var sta = lex.toStatements();
+    var res = lex.select
+      ? sta.length == 1 ? query(lex, sta[0]) : client.query(call.reset(), L4Consistency.merge(lex.hint, consistency), sta)
+      : client.execute(call.reset(), isAutoCommit(), lex.idempotent, sta);
     for (var result : res.results) {
       checkResult(result);
     }
@@ -65,10 +98,11 @@ public class L4St implements Statement {
     if (sql == null || sql.trim().isEmpty()) {
       throw badStatement();
     }
+    checkWritable(!L4Sql.of(sql).select);
     try {
       currentResponse = runRaw(sql);
       currentResultIndex = 0;
-      currentResultSet = new L4Rs(currentResponse.first(), this).clampTo(maxRows);
+      currentResultSet = new L4Rs(currentResponse.first(), this).withLobs(lobs).clampTo(maxRows);
       return currentResultSet;
     } catch (Exception e) {
       throw badQuery(e);
@@ -82,8 +116,11 @@ public class L4St implements Statement {
     if (sql == null || sql.trim().isEmpty()) {
       throw badStatement();
     }
+    checkWritable(true);
     try {
-      currentResponse = client.execute(isAutoCommit(), new L4Statement().sql(sql));
+      currentResponse = client.execute(
+        call.reset(), isAutoCommit(), L4Sql.of(sql).idempotent, new L4Statement().sql(sql)
+      );
       var result = checkResult(currentResponse.first());
       return result.rowsAffected != null ? result.rowsAffected : 0;
     } catch (Exception e) {
@@ -131,21 +168,22 @@ public class L4St implements Statement {
 
   @Override public int getQueryTimeout() throws SQLException {
     checkClosed();
-    return (int) (client.getTxTimeoutSec() == -1 ? 0 : client.getTxTimeoutSec());
+    return (int) Math.max(call.getTimeoutSec(), 0);
   }
 
   @Override public void setQueryTimeout(int seconds) throws SQLException {
     checkClosed();
     try {
-      client.withTxTimeoutSec(seconds);
+      call.withTimeoutSec(seconds);
     } catch (Exception e) {
       throw badParam(e);
     }
   }
 
+  /** Aborts the HTTP exchange this statement is waiting on, if any. Safe to call from another thread. */
   @Override public void cancel() throws SQLException {
     checkClosed();
-    throw notSupported("Statement cancellation");
+    call.cancel();
   }
 
   @Override public SQLWarning getWarnings() throws SQLException {
@@ -188,6 +226,7 @@ public class L4St implements Statement {
     if (sql == null || sql.trim().isEmpty()) {
       throw badStatement();
     }
+    checkWritable(!L4Sql.of(sql).select);
     try {
       currentResponse = runRaw(sql);
       if (currentResponse.results.isEmpty()) {
@@ -196,7 +235,7 @@ public class L4St implements Statement {
       currentResultIndex = 0;
       var result = currentResponse.first();
       if (result.columns != null && !result.columns.isEmpty()) {
-        currentResultSet = new L4Rs(result, this).clampTo(maxRows);
+        currentResultSet = new L4Rs(result, this).withLobs(lobs).clampTo(maxRows);
         return true;
       }
       return false;
@@ -278,8 +317,9 @@ public class L4St implements Statement {
     if (batch.isEmpty()) {
       return new int[0];
     }
+    checkWritable(true);
     try {
-      currentResponse = client.execute(isAutoCommit(), batch.toArray(new L4Statement[0]));
+      currentResponse = client.execute(call.reset(), isAutoCommit(), false, batch.toArray(new L4Statement[0]));
       var updateCounts = new int[currentResponse.results.size()];
       for (int i = 0; i < currentResponse.results.size(); i++) {
         var result = currentResponse.results.get(i);
@@ -391,11 +431,21 @@ public class L4St implements Statement {
     return closeOnCompletion;
   }
 
+  @Override public void setConsistency(L4Consistency consistency) throws SQLException {
+    checkClosed();
+    this.consistency = consistency;
+  }
+
+  @Override public L4Consistency getConsistency() throws SQLException {
+    checkClosed();
+    return consistency;
+  }
+
   @Override public <T> T unwrap(Class<T> iface) throws SQLException {
     if (iface == null) {
       throw badInterface();
     }
-    if (iface == Statement.class || iface == Wrapper.class) {
+    if (iface == Statement.class || iface == Wrapper.class || iface == L4Consistent.class) {
       return iface.cast(this);
     }
     throw badUnwrap(iface);
@@ -405,7 +455,7 @@ public class L4St implements Statement {
     if (iface == null) {
       throw badInterface();
     }
-    return iface == Statement.class || iface == Wrapper.class;
+    return iface == Statement.class || iface == Wrapper.class || iface == L4Consistent.class;
   }
 
 }
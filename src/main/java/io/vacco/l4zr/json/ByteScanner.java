@@ -0,0 +1,73 @@
+package io.vacco.l4zr.json;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Scans UTF-8 string content eight bytes at a time. Each step reads a little-endian long and tests
+ * all of its bytes at once for a quote, a backslash or a control character, using the usual
+ * "has zero byte" bit tricks. The lowest flagged byte is always exact, so the position of the first
+ * match is read off the mask directly. Bytes of multi-byte UTF-8 sequences are all negative and
+ * never match.
+ */
+final class ByteScanner {
+
+  private static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private static final long ONES = 0x0101010101010101L;
+  private static final long HIGH_BITS = 0x8080808080808080L;
+  private static final long QUOTES = ONES * '"';
+  private static final long BACKSLASHES = ONES * '\\';
+  private static final long SPACES = ONES * ' ';
+
+  private ByteScanner() {
+  }
+
+  /*
+   * Returns the index of the first quote, backslash or control character in input[start, end), or
+   * end if there is none.
+   */
+  static int skipPlain(byte[] input, int start, int end) {
+    int i = start;
+    while (i <= end - 8) {
+      long word = (long)LONGS.get(input, i);
+      long mask = (zeroBytes(word ^ QUOTES) | zeroBytes(word ^ BACKSLASHES)
+          | (word - SPACES) & ~word) & HIGH_BITS;
+      if (mask != 0) {
+        return i + (Long.numberOfTrailingZeros(mask) >>> 3);
+      }
+      i += 8;
+    }
+    while (i < end) {
+      byte b = input[i];
+      if (b == '"' || b == '\\' || b >= 0 && b < 0x20) {
+        return i;
+      }
+      i++;
+    }
+    return end;
+  }
+
+  /*
+   * Returns true if input[start, end) holds only ASCII bytes.
+   */
+  static boolean isAscii(byte[] input, int start, int end) {
+    int i = start;
+    long bits = 0;
+    while (i <= end - 8) {
+      bits |= (long)LONGS.get(input, i);
+      i += 8;
+    }
+    while (i < end) {
+      bits |= input[i++];
+    }
+    return (bits & HIGH_BITS) == 0;
+  }
+
+  private static long zeroBytes(long word) {
+    return (word - ONES) & ~word;
+  }
+
+}
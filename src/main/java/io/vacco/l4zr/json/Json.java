@@ -2,6 +2,7 @@ package io.vacco.l4zr.json;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 
 /**
  * This class serves as the entry point to the minimal-json API.
@@ -58,7 +59,7 @@ public final class Json {
    * @return a JSON value that represents the given value
    */
   public static JsonValue value(int value) {
-    return new JsonNumber(Integer.toString(value, 10));
+    return new JsonNumber(value);
   }
 
   /**
@@ -69,7 +70,7 @@ public final class Json {
    * @return a JSON value that represents the given value
    */
   public static JsonValue value(long value) {
-    return new JsonNumber(Long.toString(value, 10));
+    return new JsonNumber(value);
   }
 
   /**
@@ -299,6 +300,66 @@ public final class Json {
     return handler.getValue();
   }
 
+  /**
+   * Parses the given UTF-8 encoded input as JSON, without decoding it to characters first. The
+   * input must contain a valid JSON value, optionally padded with whitespace.
+   *
+   * @param bytes
+   *          the UTF-8 input, must be valid JSON
+   * @return a value that represents the parsed JSON
+   * @throws ParseException
+   *           if the input is not valid JSON
+   */
+  public static JsonValue parse(byte[] bytes) {
+    if (bytes == null) {
+      throw new NullPointerException("bytes is null");
+    }
+    DefaultHandler handler = new DefaultHandler();
+    new JsonParser(handler).parse(bytes);
+    return handler.getValue();
+  }
+
+  /**
+   * Parses the given UTF-8 encoded input as JSON, sharing one instance among equal short ASCII
+   * strings.
+   *
+   * @param bytes
+   *          the UTF-8 input, must be valid JSON
+   * @param dictionarySize
+   *          the number of distinct strings to share, or <code>0</code> to disable sharing
+   * @return a value that represents the parsed JSON
+   * @throws ParseException
+   *           if the input is not valid JSON
+   * @see JsonParser#JsonParser(JsonHandler, int)
+   */
+  public static JsonValue parse(byte[] bytes, int dictionarySize) {
+    if (bytes == null) {
+      throw new NullPointerException("bytes is null");
+    }
+    DefaultHandler handler = new DefaultHandler();
+    new JsonParser(handler, dictionarySize).parse(bytes);
+    return handler.getValue();
+  }
+
+  /**
+   * Parses the remaining UTF-8 encoded bytes of the given buffer as JSON. The buffer's position
+   * is not changed.
+   *
+   * @param input
+   *          the UTF-8 input, must be valid JSON
+   * @return a value that represents the parsed JSON
+   * @throws ParseException
+   *           if the input is not valid JSON
+   */
+  public static JsonValue parse(ByteBuffer input) {
+    if (input == null) {
+      throw new NullPointerException("input is null");
+    }
+    DefaultHandler handler = new DefaultHandler();
+    new JsonParser(handler).parse(input);
+    return handler.getValue();
+  }
+
   private static String cutOffPointZero(String string) {
     if (string.endsWith(".0")) {
       return string.substring(0, string.length() - 2);
@@ -340,6 +401,11 @@ public final class Json {
       value = new JsonNumber(string);
     }
 
+    @Override
+    public void endLong(long number) {
+      value = new JsonNumber(number);
+    }
+
     @Override
     public void endArray(JsonArray array) {
       value = array;
@@ -108,6 +108,38 @@ public abstract class JsonHandler<A, O> {
   public void endNumber(String string) {
   }
 
+  /**
+   * Indicates the end of an integer number in the JSON input that fits in a <code>long</code>,
+   * i.e. one without fraction or exponent part and with at most 18 digits. This method is called
+   * instead of {@link #endNumber(String)}, with the value computed while scanning the input, so
+   * that no string is created for it.
+   * <p>
+   * The default implementation reports the number's text to {@link #endNumber(String)}.
+   * </p>
+   *
+   * @param value
+   *          the parsed number
+   */
+  public void endLong(long value) {
+    endNumber(parser.numberText());
+  }
+
+  /**
+   * Indicates the end of a number in the JSON input with a fraction or exponent part, short enough
+   * to be converted to the nearest <code>double</code> exactly without going through a string. This
+   * method is called instead of {@link #endNumber(String)}.
+   * <p>
+   * The default implementation reports the number's text to {@link #endNumber(String)}, since the
+   * text may not be the same as the one <code>Double.toString()</code> produces for the value.
+   * </p>
+   *
+   * @param value
+   *          the parsed number
+   */
+  public void endDouble(double value) {
+    endNumber(parser.numberText());
+  }
+
   /**
    * Indicates the beginning of an array in the JSON input. This method will be called when reading
    * the opening square bracket character (<code>'['</code>).
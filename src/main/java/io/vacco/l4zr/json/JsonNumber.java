@@ -5,23 +5,39 @@ import java.io.IOException;
 @SuppressWarnings("serial") // use default serial UID
 class JsonNumber extends JsonValue {
 
-  private final String string;
+  private String string;
+  private final long value;
+  private final boolean isLong;
 
   JsonNumber(String string) {
     if (string == null) {
       throw new NullPointerException("string is null");
     }
     this.string = string;
+    this.value = 0;
+    this.isLong = false;
+  }
+
+  /*
+   * Numbers held as a long render their text on first use. Long.toString() gives the same text the
+   * parser read, since JSON integers have no leading zeros or plus sign.
+   */
+  JsonNumber(long value) {
+    this.value = value;
+    this.isLong = true;
   }
 
   @Override
   public String toString() {
+    if (string == null) {
+      string = Long.toString(value, 10);
+    }
     return string;
   }
 
   @Override
   void write(JsonWriter writer) throws IOException {
-    writer.writeNumber(string);
+    writer.writeNumber(toString());
   }
 
   @Override
@@ -29,29 +45,40 @@ class JsonNumber extends JsonValue {
     return true;
   }
 
+  @Override
+  public boolean isLong() {
+    return isLong;
+  }
+
   @Override
   public int asInt() {
+    if (isLong) {
+      if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+        throw new NumberFormatException("For input string: \"" + toString() + "\"");
+      }
+      return (int)value;
+    }
     return Integer.parseInt(string, 10);
   }
 
   @Override
   public long asLong() {
-    return Long.parseLong(string, 10);
+    return isLong ? value : Long.parseLong(string, 10);
   }
 
   @Override
   public float asFloat() {
-    return Float.parseFloat(string);
+    return isLong ? (float)value : Float.parseFloat(string);
   }
 
   @Override
   public double asDouble() {
-    return Double.parseDouble(string);
+    return isLong ? (double)value : Double.parseDouble(string);
   }
 
   @Override
   public int hashCode() {
-    return string.hashCode();
+    return toString().hashCode();
   }
 
   @Override
@@ -66,7 +93,10 @@ class JsonNumber extends JsonValue {
       return false;
     }
     JsonNumber other = (JsonNumber)object;
-    return string.equals(other.string);
+    if (isLong && other.isLong) {
+      return value == other.value;
+    }
+    return toString().equals(other.toString());
   }
 
 }
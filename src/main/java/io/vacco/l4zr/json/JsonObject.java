@@ -53,6 +53,7 @@ public class JsonObject extends JsonValue implements Iterable<Member> {
   private final List<String> names;
   private final List<JsonValue> values;
   private transient HashIndexTable table;
+  private transient boolean view;
 
   /**
    * Creates a new empty JsonObject.
@@ -60,7 +61,7 @@ public class JsonObject extends JsonValue implements Iterable<Member> {
   public JsonObject() {
     names = new ArrayList<String>();
     values = new ArrayList<JsonValue>();
-    table = new HashIndexTable();
+    table = new HashIndexTable(names);
   }
 
   /**
@@ -84,8 +85,9 @@ public class JsonObject extends JsonValue implements Iterable<Member> {
       names = new ArrayList<String>(object.names);
       values = new ArrayList<JsonValue>(object.values);
     }
-    table = new HashIndexTable();
-    updateHashIndex();
+    view = unmodifiable;
+    table = new HashIndexTable(names);
+    table.rebuild();
   }
 
   /**
@@ -496,9 +498,9 @@ public class JsonObject extends JsonValue implements Iterable<Member> {
     }
     int index = indexOf(name);
     if (index != -1) {
-      table.remove(index);
       names.remove(index);
       values.remove(index);
+      table.rebuild();
     }
     return this;
   }
@@ -762,26 +764,23 @@ public class JsonObject extends JsonValue implements Iterable<Member> {
   }
 
   int indexOf(String name) {
+    if (view && table.isStale()) {
+      table.rebuild();
+    }
     int index = table.get(name);
-    if (index != -1 && name.equals(names.get(index))) {
-      return index;
+    if (index == -1 && view) {
+      // the backing object may have replaced members without changing its size
+      return names.lastIndexOf(name);
     }
-    return names.lastIndexOf(name);
+    return index;
   }
 
   private synchronized void readObject(ObjectInputStream inputStream)
       throws IOException, ClassNotFoundException
   {
     inputStream.defaultReadObject();
-    table = new HashIndexTable();
-    updateHashIndex();
-  }
-
-  private void updateHashIndex() {
-    int size = names.size();
-    for (int i = 0; i < size; i++) {
-      table.add(names.get(i), i);
-    }
+    table = new HashIndexTable(names);
+    table.rebuild();
   }
 
   /**
@@ -853,45 +852,107 @@ public class JsonObject extends JsonValue implements Iterable<Member> {
 
   }
 
+  /*
+   * Open-addressing index from member names to their position in the names list, with linear
+   * probing. Slots hold the position plus one (0 marks an empty slot) and the name's hash code, so
+   * most mismatches are rejected without comparing strings. For duplicate names, the last member
+   * wins. The table doubles when it is three quarters full, so lookups stay O(1) at any width.
+   */
   static class HashIndexTable {
 
-    private final byte[] hashTable = new byte[32]; // must be a power of two
+    private static final int MIN_CAPACITY = 8; // must be a power of two
 
-    public HashIndexTable() {
-    }
+    private final List<String> names;
+    private int[] slots;
+    private int[] hashes;
+    private int size;
+    private int indexed;
 
-    public HashIndexTable(HashIndexTable original) {
-      System.arraycopy(original.hashTable, 0, hashTable, 0, hashTable.length);
+    HashIndexTable(List<String> names) {
+      this.names = names;
     }
 
     void add(String name, int index) {
-      int slot = hashSlotFor(name);
-      if (index < 0xff) {
-        // increment by 1, 0 stands for empty
-        hashTable[slot] = (byte)(index + 1);
-      } else {
-        hashTable[slot] = 0;
+      if (slots == null) {
+        slots = new int[MIN_CAPACITY];
+        hashes = new int[MIN_CAPACITY];
+      } else if ((size + 1) * 4 > slots.length * 3) {
+        resize(slots.length * 2);
+      }
+      int hash = name.hashCode();
+      int mask = slots.length - 1;
+      int slot = spread(hash) & mask;
+      while (slots[slot] != 0) {
+        if (hashes[slot] == hash && name.equals(names.get(slots[slot] - 1))) {
+          slots[slot] = index + 1;
+          indexed = Math.max(indexed, index + 1);
+          return;
+        }
+        slot = (slot + 1) & mask;
       }
+      slots[slot] = index + 1;
+      hashes[slot] = hash;
+      size++;
+      indexed = Math.max(indexed, index + 1);
     }
 
-    void remove(int index) {
-      for (int i = 0; i < hashTable.length; i++) {
-        if (hashTable[i] == index + 1) {
-          hashTable[i] = 0;
-        } else if (hashTable[i] > index + 1) {
-          hashTable[i]--;
+    int get(String name) {
+      if (slots == null) {
+        return -1;
+      }
+      int hash = name.hashCode();
+      int mask = slots.length - 1;
+      int slot = spread(hash) & mask;
+      int count = names.size();
+      while (slots[slot] != 0) {
+        int index = slots[slot] - 1;
+        if (hashes[slot] == hash && index < count && name.equals(names.get(index))) {
+          return index;
         }
+        slot = (slot + 1) & mask;
       }
+      return -1;
     }
 
-    int get(Object name) {
-      int slot = hashSlotFor(name);
-      // subtract 1, 0 stands for empty
-      return (hashTable[slot] & 0xff) - 1;
+    /*
+     * Returns true if the names list has a different length than when it was last indexed, which
+     * can only happen for unmodifiable views of another object.
+     */
+    boolean isStale() {
+      return indexed != names.size();
+    }
+
+    void rebuild() {
+      slots = null;
+      hashes = null;
+      size = 0;
+      indexed = 0;
+      int count = names.size();
+      for (int i = 0; i < count; i++) {
+        add(names.get(i), i);
+      }
+    }
+
+    private void resize(int capacity) {
+      int[] oldSlots = slots;
+      int[] oldHashes = hashes;
+      slots = new int[capacity];
+      hashes = new int[capacity];
+      int mask = capacity - 1;
+      for (int i = 0; i < oldSlots.length; i++) {
+        if (oldSlots[i] != 0) {
+          int slot = spread(oldHashes[i]) & mask;
+          while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+          }
+          slots[slot] = oldSlots[i];
+          hashes[slot] = oldHashes[i];
+        }
+      }
     }
 
-    private int hashSlotFor(Object element) {
-      return element.hashCode() & hashTable.length - 1;
+    private static int spread(int hash) {
+      return hash ^ hash >>> 16;
     }
 
   }
@@ -3,6 +3,8 @@ package io.vacco.l4zr.json;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * A streaming parser for JSON text. The parser reports all events to a given handler.
@@ -12,10 +14,17 @@ public class JsonParser {
   private static final int MAX_NESTING_LEVEL = 1000;
   private static final int MIN_BUFFER_SIZE = 10;
   private static final int DEFAULT_BUFFER_SIZE = 1024;
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
 
   private final JsonHandler<Object, Object> handler;
+  private final int dictionarySize;
+  private StringDictionary dictionary;
   private Reader reader;
   private char[] buffer;
+  private byte[] bytes;
   private int bufferOffset;
   private int index;
   private int fill;
@@ -24,9 +33,14 @@ public class JsonParser {
   private int current;
   private StringBuilder captureBuffer;
   private int captureStart;
+  private String numberText;
   private int nestingLevel;
 
   /*
+   * In byte mode, the whole input is the buffer: bytes[index] is the next byte, fill is the end of
+   * the input, and bufferOffset is minus the input's offset in the array, so that locations are
+   * relative to the start of the input.
+   *
    * |                      bufferOffset
    *                        v
    * [a|b|c|d|e|f|g|h|i|j|k|l|m|n|o|p|q|r|s|t]        < input
@@ -42,12 +56,31 @@ public class JsonParser {
    * @param handler
    *          the handler to process parser events
    */
-  @SuppressWarnings("unchecked")
   public JsonParser(JsonHandler<?, ?> handler) {
+    this(handler, 0);
+  }
+
+  /**
+   * Creates a new JsonParser with the given handler and a string dictionary for byte input. While
+   * parsing UTF-8 bytes, equal ASCII strings of up to 64 bytes are reported as the same instance,
+   * for the first <code>dictionarySize</code> distinct strings of each input. Repeated values, like
+   * the contents of low-cardinality columns, then cost no allocation past their first occurrence.
+   *
+   * @param handler
+   *          the handler to process parser events
+   * @param dictionarySize
+   *          the number of distinct strings to remember per input, or <code>0</code> to disable
+   */
+  @SuppressWarnings("unchecked")
+  public JsonParser(JsonHandler<?, ?> handler, int dictionarySize) {
     if (handler == null) {
       throw new NullPointerException("handler is null");
     }
+    if (dictionarySize < 0) {
+      throw new IllegalArgumentException("dictionarySize is negative");
+    }
     this.handler = (JsonHandler<Object, Object>)handler;
+    this.dictionarySize = dictionarySize;
     handler.parser = this;
   }
 
@@ -118,13 +151,101 @@ public class JsonParser {
     }
     this.reader = reader;
     buffer = new char[buffersize];
+    bytes = null;
     bufferOffset = 0;
     index = 0;
     fill = 0;
+    parseInput();
+  }
+
+  /**
+   * Parses the given UTF-8 encoded input. The input must contain a valid JSON value, optionally
+   * padded with whitespace.
+   * <p>
+   * Bytes are scanned in place, without decoding the input to characters first. Strings are
+   * decoded straight from the input, and strings without escape sequences are created with a
+   * single copy.
+   * </p>
+   *
+   * @param bytes
+   *          the UTF-8 input, must be valid JSON
+   * @throws ParseException
+   *           if the input is not valid JSON
+   */
+  public void parse(byte[] bytes) {
+    if (bytes == null) {
+      throw new NullPointerException("bytes is null");
+    }
+    parse(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Parses <code>length</code> bytes of UTF-8 encoded input, starting at <code>offset</code>.
+   *
+   * @param bytes
+   *          the array holding the input
+   * @param offset
+   *          the index of the first byte of the input
+   * @param length
+   *          the number of bytes in the input
+   * @throws ParseException
+   *           if the input is not valid JSON
+   * @see #parse(byte[])
+   */
+  public void parse(byte[] bytes, int offset, int length) {
+    if (bytes == null) {
+      throw new NullPointerException("bytes is null");
+    }
+    if (offset < 0 || length < 0 || offset > bytes.length - length) {
+      throw new IndexOutOfBoundsException("offset or length out of range");
+    }
+    this.reader = null;
+    this.buffer = null;
+    this.bytes = bytes;
+    bufferOffset = -offset;
+    index = offset;
+    fill = offset + length;
+    dictionary = dictionarySize > 0 ? new StringDictionary(dictionarySize) : null;
+    try {
+      parseInput();
+    } catch (IOException exception) {
+      // byte input does not throw IOException
+      throw new RuntimeException(exception);
+    } finally {
+      this.bytes = null;
+      this.dictionary = null;
+    }
+  }
+
+  /**
+   * Parses the remaining UTF-8 encoded bytes of the given buffer. Heap buffers are scanned in
+   * place; the buffer's position is not changed.
+   *
+   * @param input
+   *          the UTF-8 input, must be valid JSON
+   * @throws ParseException
+   *           if the input is not valid JSON
+   * @see #parse(byte[])
+   */
+  public void parse(ByteBuffer input) {
+    if (input == null) {
+      throw new NullPointerException("input is null");
+    }
+    if (input.hasArray()) {
+      parse(input.array(), input.arrayOffset() + input.position(), input.remaining());
+    } else {
+      byte[] copy = new byte[input.remaining()];
+      input.duplicate().get(copy);
+      parse(copy);
+    }
+  }
+
+  private void parseInput() throws IOException {
     line = 1;
     lineOffset = 0;
     current = 0;
     captureStart = -1;
+    nestingLevel = 0;
     read();
     skipWhiteSpace();
     readValue();
@@ -279,6 +400,12 @@ public class JsonParser {
   }
 
   private String readStringInternal() throws IOException {
+    if (bytes != null) {
+      String string = readAsciiOrUtf8String();
+      if (string != null) {
+        return string;
+      }
+    }
     read();
     startCapture();
     while (current != '"') {
@@ -288,6 +415,10 @@ public class JsonParser {
         startCapture();
       } else if (current < 0x20) {
         throw expected("valid string character");
+      } else if (bytes != null) {
+        // Strings hold no raw line breaks, so whole runs can be skipped without tracking lines
+        index = ByteScanner.skipPlain(bytes, index, fill);
+        read();
       } else {
         read();
       }
@@ -297,6 +428,32 @@ public class JsonParser {
     return string;
   }
 
+  /*
+   * Fast path for byte input: scans for the closing quote and decodes the string with a single
+   * copy. Quotes, backslashes and control characters are ASCII, and every byte of a multi-byte
+   * UTF-8 sequence is negative, so the scan can't be fooled by non-ASCII text. Returns null,
+   * without consuming any input, for strings that need the general path.
+   */
+  private String readAsciiOrUtf8String() throws IOException {
+    byte[] input = bytes;
+    int start = index;
+    int i = ByteScanner.skipPlain(input, start, fill);
+    if (i == fill || input[i] != '"') {
+      return null;
+    }
+    String string;
+    if (dictionary != null && i - start <= StringDictionary.MAX_LENGTH
+        && ByteScanner.isAscii(input, start, i)) {
+      string = dictionary.get(input, start, i);
+    } else {
+      string = new String(input, start, i - start, StandardCharsets.UTF_8);
+    }
+    index = i + 1;
+    current = '"';
+    read();
+    return string;
+  }
+
   private void readEscape() throws IOException {
     read();
     switch (current) {
@@ -337,48 +494,101 @@ public class JsonParser {
     read();
   }
 
+  /*
+   * Digits are accumulated into a long while scanning. Integers of up to 18 digits go to endLong();
+   * numbers of up to 15 significant digits and a decimal exponent within 22 go to endDouble(), since
+   * both the mantissa and the power of ten are exact doubles and a single multiplication or division
+   * rounds correctly. Everything else, and "-0", is reported as text. The number's text is only
+   * built if the handler asks for it.
+   */
   private void readNumber() throws IOException {
     handler.startNumber();
+    numberText = null;
     startCapture();
-    readChar('-');
+    boolean negative = readChar('-');
     int firstDigit = current;
     if (!readDigit()) {
       throw expected("digit");
     }
+    long mantissa = firstDigit - '0';
+    int digits = 1;
     if (firstDigit != '0') {
-      while (readDigit()) {
+      while (isDigit()) {
+        mantissa = mantissa * 10 + (current - '0');
+        digits++;
+        read();
       }
     }
-    readFraction();
-    readExponent();
-    handler.endNumber(endCapture());
-  }
-
-  private boolean readFraction() throws IOException {
-    if (!readChar('.')) {
-      return false;
+    int fractionDigits = -1;
+    if (readChar('.')) {
+      if (!isDigit()) {
+        throw expected("digit");
+      }
+      fractionDigits = 0;
+      while (isDigit()) {
+        mantissa = mantissa * 10 + (current - '0');
+        fractionDigits++;
+        read();
+      }
     }
-    if (!readDigit()) {
-      throw expected("digit");
+    boolean hasFraction = fractionDigits >= 0;
+    if (hasFraction) {
+      digits += fractionDigits;
+    }
+    int exponent = readExponent();
+    boolean hasExponent = exponent != Integer.MIN_VALUE;
+    if (!hasFraction && !hasExponent) {
+      if (digits <= 18 && !(negative && mantissa == 0)) {
+        handler.endLong(negative ? -mantissa : mantissa);
+      } else {
+        handler.endNumber(numberText());
+      }
+    } else {
+      int scale = (hasExponent ? exponent : 0) - (hasFraction ? fractionDigits : 0);
+      if (digits <= 15 && scale >= -22 && scale <= 22) {
+        double value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+        handler.endDouble(negative ? -value : value);
+      } else {
+        handler.endNumber(numberText());
+      }
     }
-    while (readDigit()) {
+    if (captureStart != -1) {
+      captureStart = -1;
+      captureBuffer.setLength(0);
     }
-    return true;
+    numberText = null;
   }
 
-  private boolean readExponent() throws IOException {
+  /*
+   * Returns the text of the number being reported to the handler.
+   */
+  String numberText() {
+    if (captureStart != -1) {
+      numberText = endCapture();
+    }
+    return numberText;
+  }
+
+  /*
+   * Returns the exponent, clamped to the int range, or Integer.MIN_VALUE if there is none.
+   */
+  private int readExponent() throws IOException {
     if (!readChar('e') && !readChar('E')) {
-      return false;
+      return Integer.MIN_VALUE;
     }
+    boolean negative = false;
     if (!readChar('+')) {
-      readChar('-');
+      negative = readChar('-');
     }
-    if (!readDigit()) {
+    if (!isDigit()) {
       throw expected("digit");
     }
-    while (readDigit()) {
+    int exponent = 0;
+    while (isDigit()) {
+      exponent = Math.min(exponent * 10 + (current - '0'), 100000);
+      read();
     }
-    return true;
+    return negative ? -exponent : exponent;
   }
 
   private boolean readChar(char ch) throws IOException {
@@ -405,6 +615,11 @@ public class JsonParser {
 
   private void read() throws IOException {
     if (index == fill) {
+      if (bytes != null) {
+        current = -1;
+        index++;
+        return;
+      }
       if (captureStart != -1) {
         captureBuffer.append(buffer, captureStart, fill - captureStart);
         captureStart = 0;
@@ -422,7 +637,7 @@ public class JsonParser {
       line++;
       lineOffset = bufferOffset + index;
     }
-    current = buffer[index++];
+    current = bytes != null ? bytes[index++] & 0xff : buffer[index++];
   }
 
   private void startCapture() {
@@ -434,7 +649,7 @@ public class JsonParser {
 
   private void pauseCapture() {
     int end = current == -1 ? index : index - 1;
-    captureBuffer.append(buffer, captureStart, end - captureStart);
+    appendCapture(captureStart, end);
     captureStart = -1;
   }
 
@@ -443,14 +658,29 @@ public class JsonParser {
     int end = index - 1;
     captureStart = -1;
     if (captureBuffer.length() > 0) {
-      captureBuffer.append(buffer, start, end - start);
+      appendCapture(start, end);
       String captured = captureBuffer.toString();
       captureBuffer.setLength(0);
       return captured;
     }
+    if (bytes != null) {
+      return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
     return new String(buffer, start, end - start);
   }
 
+  /*
+   * Captures in byte mode always start and end next to an ASCII character, so each captured range
+   * holds whole UTF-8 sequences and can be decoded on its own.
+   */
+  private void appendCapture(int start, int end) {
+    if (bytes != null) {
+      captureBuffer.append(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+    } else {
+      captureBuffer.append(buffer, start, end - start);
+    }
+  }
+
   Location getLocation() {
     int offset = bufferOffset + index - 1;
     int column = offset - lineOffset + 1;
@@ -0,0 +1,604 @@
+package io.vacco.l4zr.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A lazily decoded JSON document over UTF-8 bytes. A single pass validates the input and records
+ * the position of every value on a tape; nothing else is built. Values are decoded only when they
+ * are read through a {@link Node}, so a caller that reads two fields of a large document pays for
+ * the structural pass and those two fields, not for a tree of the whole document.
+ * <p>
+ * Each tape entry holds the value's kind, its byte range in the input and, for arrays and objects,
+ * the tape position just past its last descendant, which lets lookups skip whole subtrees. Object
+ * members are a name entry followed by the value's entries.
+ * </p>
+ * <p>
+ * The input array is referenced, not copied, and must not be modified while the tape is in use.
+ * Like the rest of this package, instances are not thread-safe.
+ * </p>
+ */
+public final class JsonTape {
+
+  private static final int MAX_NESTING_LEVEL = 1000;
+
+  private static final byte OBJECT = 1, ARRAY = 2, STRING = 3, ESCAPED_STRING = 4, NUMBER = 5,
+      TRUE = 6, FALSE = 7, NULL = 8;
+
+  private final byte[] bytes;
+  private final int inputStart;
+  private final int inputEnd;
+  private byte[] kinds = new byte[64];
+  private int[] starts = new int[64];
+  private int[] ends = new int[64];
+  private int[] nexts = new int[64];
+  private int size;
+
+  private JsonTape(byte[] bytes, int offset, int length) {
+    this.bytes = bytes;
+    this.inputStart = offset;
+    this.inputEnd = offset + length;
+  }
+
+  /**
+   * Validates the given UTF-8 input and records its structure.
+   *
+   * @param bytes
+   *          the UTF-8 input, must be valid JSON
+   * @return the tape for the input
+   * @throws ParseException
+   *           if the input is not valid JSON
+   */
+  public static JsonTape parse(byte[] bytes) {
+    if (bytes == null) {
+      throw new NullPointerException("bytes is null");
+    }
+    return parse(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Validates <code>length</code> bytes of UTF-8 input, starting at <code>offset</code>, and
+   * records their structure.
+   *
+   * @param bytes
+   *          the array holding the input
+   * @param offset
+   *          the index of the first byte of the input
+   * @param length
+   *          the number of bytes in the input
+   * @return the tape for the input
+   * @throws ParseException
+   *           if the input is not valid JSON
+   */
+  public static JsonTape parse(byte[] bytes, int offset, int length) {
+    if (bytes == null) {
+      throw new NullPointerException("bytes is null");
+    }
+    if (offset < 0 || length < 0 || offset > bytes.length - length) {
+      throw new IndexOutOfBoundsException("offset or length out of range");
+    }
+    JsonTape tape = new JsonTape(bytes, offset, length);
+    int pos = tape.skipWhiteSpace(offset);
+    pos = tape.readValue(pos, 0);
+    pos = tape.skipWhiteSpace(pos);
+    if (pos != tape.inputEnd) {
+      throw tape.error("Unexpected character", pos);
+    }
+    return tape;
+  }
+
+  /**
+   * Returns the document's top-level value.
+   *
+   * @return the root node
+   */
+  public Node root() {
+    return new Node(0);
+  }
+
+  /**
+   * Returns the number of values recorded on the tape, including object member names.
+   *
+   * @return the tape length
+   */
+  public int size() {
+    return size;
+  }
+
+  private int add(byte kind, int start) {
+    if (size == kinds.length) {
+      int capacity = size * 2;
+      kinds = Arrays.copyOf(kinds, capacity);
+      starts = Arrays.copyOf(starts, capacity);
+      ends = Arrays.copyOf(ends, capacity);
+      nexts = Arrays.copyOf(nexts, capacity);
+    }
+    kinds[size] = kind;
+    starts[size] = start;
+    nexts[size] = size + 1;
+    return size++;
+  }
+
+  private int readValue(int pos, int depth) {
+    if (pos >= inputEnd) {
+      throw error("Unexpected end of input", pos);
+    }
+    switch (bytes[pos]) {
+      case '{':
+        return readObject(pos, depth);
+      case '[':
+        return readArray(pos, depth);
+      case '"':
+        return readString(pos);
+      case 't':
+        return readLiteral(pos, TRUE, "true");
+      case 'f':
+        return readLiteral(pos, FALSE, "false");
+      case 'n':
+        return readLiteral(pos, NULL, "null");
+      default:
+        return readNumber(pos);
+    }
+  }
+
+  private int readObject(int pos, int depth) {
+    if (depth >= MAX_NESTING_LEVEL) {
+      throw error("Nesting too deep", pos);
+    }
+    int entry = add(OBJECT, pos);
+    pos = skipWhiteSpace(pos + 1);
+    if (at(pos, '}')) {
+      return close(entry, pos + 1);
+    }
+    while (true) {
+      if (!at(pos, '"')) {
+        throw expected("name", pos);
+      }
+      pos = skipWhiteSpace(readString(pos));
+      if (!at(pos, ':')) {
+        throw expected("':'", pos);
+      }
+      pos = skipWhiteSpace(readValue(skipWhiteSpace(pos + 1), depth + 1));
+      if (at(pos, ',')) {
+        pos = skipWhiteSpace(pos + 1);
+      } else if (at(pos, '}')) {
+        return close(entry, pos + 1);
+      } else {
+        throw expected("',' or '}'", pos);
+      }
+    }
+  }
+
+  private int readArray(int pos, int depth) {
+    if (depth >= MAX_NESTING_LEVEL) {
+      throw error("Nesting too deep", pos);
+    }
+    int entry = add(ARRAY, pos);
+    pos = skipWhiteSpace(pos + 1);
+    if (at(pos, ']')) {
+      return close(entry, pos + 1);
+    }
+    while (true) {
+      pos = skipWhiteSpace(readValue(pos, depth + 1));
+      if (at(pos, ',')) {
+        pos = skipWhiteSpace(pos + 1);
+      } else if (at(pos, ']')) {
+        return close(entry, pos + 1);
+      } else {
+        throw expected("',' or ']'", pos);
+      }
+    }
+  }
+
+  private int close(int entry, int end) {
+    ends[entry] = end;
+    nexts[entry] = size;
+    return end;
+  }
+
+  private int readString(int pos) {
+    int entry = add(STRING, pos);
+    int i = pos + 1;
+    while ((i = ByteScanner.skipPlain(bytes, i, inputEnd)) < inputEnd) {
+      byte b = bytes[i];
+      if (b == '"') {
+        ends[entry] = i + 1;
+        return i + 1;
+      } else if (b == '\\') {
+        kinds[entry] = ESCAPED_STRING;
+        i = readEscape(i + 1);
+      } else {
+        throw expected("valid string character", i);
+      }
+    }
+    throw error("Unexpected end of input", i);
+  }
+
+  private int readEscape(int pos) {
+    if (pos >= inputEnd) {
+      throw error("Unexpected end of input", pos);
+    }
+    switch (bytes[pos]) {
+      case '"':
+      case '/':
+      case '\\':
+      case 'b':
+      case 'f':
+      case 'n':
+      case 'r':
+      case 't':
+        return pos + 1;
+      case 'u':
+        for (int i = pos + 1; i < pos + 5; i++) {
+          if (i >= inputEnd || !isHexDigit(bytes[i])) {
+            throw expected("hexadecimal digit", i);
+          }
+        }
+        return pos + 5;
+      default:
+        throw expected("valid escape sequence", pos);
+    }
+  }
+
+  private int readLiteral(int pos, byte kind, String literal) {
+    int entry = add(kind, pos);
+    for (int i = 0; i < literal.length(); i++) {
+      if (!at(pos + i, literal.charAt(i))) {
+        throw expected("'" + literal.charAt(i) + "'", pos + i);
+      }
+    }
+    ends[entry] = pos + literal.length();
+    return ends[entry];
+  }
+
+  private int readNumber(int pos) {
+    int entry = add(NUMBER, pos);
+    int i = pos;
+    if (at(i, '-')) {
+      i++;
+    }
+    if (!isDigit(i)) {
+      throw expected(i == pos ? "value" : "digit", i);
+    }
+    if (at(i, '0')) {
+      i++;
+    } else {
+      while (isDigit(i)) {
+        i++;
+      }
+    }
+    if (at(i, '.')) {
+      i++;
+      if (!isDigit(i)) {
+        throw expected("digit", i);
+      }
+      while (isDigit(i)) {
+        i++;
+      }
+    }
+    if (at(i, 'e') || at(i, 'E')) {
+      i++;
+      if (at(i, '+') || at(i, '-')) {
+        i++;
+      }
+      if (!isDigit(i)) {
+        throw expected("digit", i);
+      }
+      while (isDigit(i)) {
+        i++;
+      }
+    }
+    ends[entry] = i;
+    return i;
+  }
+
+  private int skipWhiteSpace(int pos) {
+    while (pos < inputEnd) {
+      byte b = bytes[pos];
+      if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+        break;
+      }
+      pos++;
+    }
+    return pos;
+  }
+
+  private boolean at(int pos, char ch) {
+    return pos < inputEnd && bytes[pos] == ch;
+  }
+
+  private boolean isDigit(int pos) {
+    return pos < inputEnd && bytes[pos] >= '0' && bytes[pos] <= '9';
+  }
+
+  private static boolean isHexDigit(byte b) {
+    return b >= '0' && b <= '9' || b >= 'a' && b <= 'f' || b >= 'A' && b <= 'F';
+  }
+
+  private ParseException expected(String expected, int pos) {
+    if (pos >= inputEnd) {
+      return error("Unexpected end of input", pos);
+    }
+    return error("Expected " + expected, pos);
+  }
+
+  private ParseException error(String message, int pos) {
+    int line = 1;
+    int lineStart = inputStart;
+    for (int i = inputStart; i < pos && i < inputEnd; i++) {
+      if (bytes[i] == '\n') {
+        line++;
+        lineStart = i + 1;
+      }
+    }
+    return new ParseException(message, new Location(pos - inputStart, line, pos - lineStart + 1));
+  }
+
+  private String text(int entry) {
+    return new String(bytes, starts[entry], ends[entry] - starts[entry], StandardCharsets.UTF_8);
+  }
+
+  private JsonValue materialize(int entry) {
+    Json.DefaultHandler handler = new Json.DefaultHandler();
+    new JsonParser(handler).parse(bytes, starts[entry], ends[entry] - starts[entry]);
+    return handler.getValue();
+  }
+
+  private String string(int entry) {
+    if (kinds[entry] == STRING) {
+      return new String(bytes, starts[entry] + 1, ends[entry] - starts[entry] - 2,
+          StandardCharsets.UTF_8);
+    }
+    return materialize(entry).asString();
+  }
+
+  /*
+   * Compares the name at the given entry with a string, without decoding the name when both are
+   * ASCII.
+   */
+  private boolean nameEquals(int entry, String name) {
+    int start = starts[entry] + 1;
+    int end = ends[entry] - 1;
+    if (kinds[entry] == STRING) {
+      boolean ascii = true;
+      if (end - start == name.length()) {
+        for (int i = start; i < end; i++) {
+          byte b = bytes[i];
+          char c = name.charAt(i - start);
+          if (b < 0 || c >= 0x80) {
+            ascii = false;
+            break;
+          }
+          if (b != c) {
+            return false;
+          }
+        }
+        if (ascii) {
+          return true;
+        }
+      } else {
+        for (int i = start; i < end && ascii; i++) {
+          ascii = bytes[i] >= 0;
+        }
+        if (ascii) {
+          return false;
+        }
+      }
+    }
+    return string(entry).equals(name);
+  }
+
+  /**
+   * A value on the tape. Nodes are cheap handles; reading a scalar decodes just that value, and
+   * {@link #get(String)} skips over the subtrees of other members.
+   */
+  public final class Node {
+
+    private final int entry;
+
+    private Node(int entry) {
+      this.entry = entry;
+    }
+
+    public boolean isObject() {
+      return kinds[entry] == OBJECT;
+    }
+
+    public boolean isArray() {
+      return kinds[entry] == ARRAY;
+    }
+
+    public boolean isString() {
+      return kinds[entry] == STRING || kinds[entry] == ESCAPED_STRING;
+    }
+
+    public boolean isNumber() {
+      return kinds[entry] == NUMBER;
+    }
+
+    public boolean isBoolean() {
+      return kinds[entry] == TRUE || kinds[entry] == FALSE;
+    }
+
+    public boolean isNull() {
+      return kinds[entry] == NULL;
+    }
+
+    /**
+     * Returns the value of the member with the given name. If this object contains multiple members
+     * with the name, the last one is returned, as in {@link JsonObject#get(String)}.
+     *
+     * @param name
+     *          the member name
+     * @return the member's value, or <code>null</code> if this is not an object or has no such
+     *         member
+     */
+    public Node get(String name) {
+      if (name == null) {
+        throw new NullPointerException("name is null");
+      }
+      if (kinds[entry] != OBJECT) {
+        return null;
+      }
+      int found = -1;
+      for (int i = entry + 1; i < nexts[entry]; i = nexts[i + 1]) {
+        if (nameEquals(i, name)) {
+          found = i + 1;
+        }
+      }
+      return found != -1 ? new Node(found) : null;
+    }
+
+    /**
+     * Returns the element at the given position of this array.
+     *
+     * @param index
+     *          the element position
+     * @return the element, or <code>null</code> if this is not an array or is too short
+     */
+    public Node get(int index) {
+      if (kinds[entry] != ARRAY || index < 0) {
+        return null;
+      }
+      int i = entry + 1;
+      for (int n = 0; i < nexts[entry]; i = nexts[i], n++) {
+        if (n == index) {
+          return new Node(i);
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Follows the given member names from this node.
+     *
+     * @param names
+     *          the member names, outermost first
+     * @return the value at the end of the path, or <code>null</code> if any step is missing
+     */
+    public Node path(String... names) {
+      Node node = this;
+      for (String name : names) {
+        node = node.get(name);
+        if (node == null) {
+          return null;
+        }
+      }
+      return node;
+    }
+
+    /**
+     * Returns the number of elements of this array or members of this object.
+     *
+     * @return the number of children, <code>0</code> for scalars
+     */
+    public int size() {
+      int count = 0;
+      int step = kinds[entry] == OBJECT ? 2 : 1;
+      for (int i = entry + 1; i < nexts[entry]; i = nexts[i + step - 1]) {
+        count++;
+      }
+      return count;
+    }
+
+    /**
+     * Returns the members of this object, or the elements of this array, as nodes.
+     *
+     * @return the children of this node, empty for scalars
+     */
+    public List<Node> values() {
+      List<Node> values = new ArrayList<Node>();
+      int step = kinds[entry] == OBJECT ? 2 : 1;
+      for (int i = entry + 1; i < nexts[entry]; i = nexts[i + step - 1]) {
+        values.add(new Node(i + step - 1));
+      }
+      return values;
+    }
+
+    /**
+     * Returns the member names of this object in document order.
+     *
+     * @return the names, empty if this is not an object
+     */
+    public List<String> names() {
+      List<String> names = new ArrayList<String>();
+      if (kinds[entry] == OBJECT) {
+        for (int i = entry + 1; i < nexts[entry]; i = nexts[i + 1]) {
+          names.add(string(i));
+        }
+      }
+      return names;
+    }
+
+    public String asString() {
+      if (!isString()) {
+        throw new UnsupportedOperationException("Not a string: " + toString());
+      }
+      return string(entry);
+    }
+
+    public long asLong() {
+      if (!isNumber()) {
+        throw new UnsupportedOperationException("Not a number: " + toString());
+      }
+      return materialize(entry).asLong();
+    }
+
+    public double asDouble() {
+      if (!isNumber()) {
+        throw new UnsupportedOperationException("Not a number: " + toString());
+      }
+      return materialize(entry).asDouble();
+    }
+
+    public boolean asBoolean() {
+      if (!isBoolean()) {
+        throw new UnsupportedOperationException("Not a boolean: " + toString());
+      }
+      return kinds[entry] == TRUE;
+    }
+
+    public String getString(String name, String defaultValue) {
+      Node node = get(name);
+      return node != null && node.isString() ? node.asString() : defaultValue;
+    }
+
+    public long getLong(String name, long defaultValue) {
+      Node node = get(name);
+      return node != null && node.isNumber() ? node.asLong() : defaultValue;
+    }
+
+    public double getDouble(String name, double defaultValue) {
+      Node node = get(name);
+      return node != null && node.isNumber() ? node.asDouble() : defaultValue;
+    }
+
+    public boolean getBoolean(String name, boolean defaultValue) {
+      Node node = get(name);
+      return node != null && node.isBoolean() ? node.asBoolean() : defaultValue;
+    }
+
+    /**
+     * Decodes this value and everything below it into a regular JSON tree.
+     *
+     * @return the value as a tree
+     */
+    public JsonValue toJsonValue() {
+      return materialize(entry);
+    }
+
+    /**
+     * Returns this value's JSON text, as it appears in the input.
+     *
+     * @return the JSON text of this value
+     */
+    @Override
+    public String toString() {
+      return text(entry);
+    }
+
+  }
+
+}
@@ -1,6 +1,7 @@
 package io.vacco.l4zr.json;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Serializable;
 import java.io.StringWriter;
@@ -210,6 +211,17 @@ public abstract class JsonValue implements Serializable {
     return false;
   }
 
+  /**
+   * Detects whether this value is a JSON number held as a <code>long</code>, as created by the
+   * parser for integers that fit in one. For such values, {@link #asLong()} and {@link #asInt()}
+   * return the value without parsing any text.
+   *
+   * @return <code>true</code> if this value is a JSON number held as a <code>long</code>
+   */
+  public boolean isLong() {
+    return false;
+  }
+
   /**
    * Detects whether this value represents a JSON string.
    *
@@ -415,6 +427,50 @@ public abstract class JsonValue implements Serializable {
     buffer.flush();
   }
 
+  /**
+   * Writes the JSON representation of this value to the given stream as UTF-8, in its minimal form,
+   * without any additional whitespace.
+   * <p>
+   * Characters are encoded straight into a reused per-thread byte buffer that is passed on to the
+   * stream in blocks, so no String of the whole document is built.
+   * </p>
+   *
+   * @param stream
+   *          the stream to write this value to
+   * @throws IOException
+   *           if an I/O error occurs in the stream
+   */
+  public void writeTo(OutputStream stream) throws IOException {
+    writeTo(stream, WriterConfig.MINIMAL);
+  }
+
+  /**
+   * Writes the JSON representation of this value to the given stream as UTF-8, using the given
+   * formatting.
+   *
+   * @param stream
+   *          the stream to write this value to
+   * @param config
+   *          a configuration that controls the formatting or <code>null</code> for the minimal form
+   * @throws IOException
+   *           if an I/O error occurs in the stream
+   */
+  public void writeTo(OutputStream stream, WriterConfig config) throws IOException {
+    if (stream == null) {
+      throw new NullPointerException("stream is null");
+    }
+    if (config == null) {
+      throw new NullPointerException("config is null");
+    }
+    Utf8WritingBuffer buffer = new Utf8WritingBuffer(stream);
+    try {
+      write(config.createWriter(buffer));
+      buffer.flush();
+    } finally {
+      buffer.close();
+    }
+  }
+
   /**
    * Returns the JSON string for this value in its minimal form, without any additional whitespace.
    * The result is guaranteed to be a valid input for the method {@link Json#parse(String)} and to
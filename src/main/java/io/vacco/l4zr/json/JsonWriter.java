@@ -18,6 +18,8 @@ class JsonWriter {
   private static final char[] UNICODE_2029_CHARS = {'\\', 'u', '2', '0', '2', '9'};
   private static final char[] HEX_DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9',
                                             'a', 'b', 'c', 'd', 'e', 'f'};
+  // Replacements for the characters up to '\\', null for those written as they are
+  private static final char[][] ESCAPES = createEscapes();
 
   protected final Writer writer;
 
@@ -77,47 +79,38 @@ class JsonWriter {
     int length = string.length();
     int start = 0;
     for (int index = 0; index < length; index++) {
-      char[] replacement = getReplacementChars(string.charAt(index));
-      if (replacement != null) {
-        writer.write(string, start, index - start);
-        writer.write(replacement);
-        start = index + 1;
+      char ch = string.charAt(index);
+      char[] replacement;
+      if (ch < ESCAPES.length) {
+        if ((replacement = ESCAPES[ch]) == null) {
+          continue;
+        }
+      } else if (ch == '\u2028') {
+        replacement = UNICODE_2028_CHARS;
+      } else if (ch == '\u2029') {
+        replacement = UNICODE_2029_CHARS;
+      } else {
+        continue;
       }
+      writer.write(string, start, index - start);
+      writer.write(replacement);
+      start = index + 1;
     }
     writer.write(string, start, length - start);
   }
 
-  private static char[] getReplacementChars(char ch) {
-    if (ch > '\\') {
-      if (ch < '\u2028' || ch > '\u2029') {
-        // The lower range contains 'a' .. 'z'. Only 2 checks required.
-        return null;
-      }
-      return ch == '\u2028' ? UNICODE_2028_CHARS : UNICODE_2029_CHARS;
-    }
-    if (ch == '\\') {
-      return BS_CHARS;
-    }
-    if (ch > '"') {
-      // This range contains '0' .. '9' and 'A' .. 'Z'. Need 3 checks to get here.
-      return null;
-    }
-    if (ch == '"') {
-      return QUOT_CHARS;
-    }
-    if (ch > CONTROL_CHARACTERS_END) {
-      return null;
-    }
-    if (ch == '\n') {
-      return LF_CHARS;
-    }
-    if (ch == '\r') {
-      return CR_CHARS;
-    }
-    if (ch == '\t') {
-      return TAB_CHARS;
+  private static char[][] createEscapes() {
+    char[][] escapes = new char['\\' + 1][];
+    for (char ch = 0; ch <= CONTROL_CHARACTERS_END; ch++) {
+      escapes[ch] = new char[] {'\\', 'u', '0', '0', HEX_DIGITS[ch >> 4 & 0x000f],
+                                HEX_DIGITS[ch & 0x000f]};
     }
-    return new char[] {'\\', 'u', '0', '0', HEX_DIGITS[ch >> 4 & 0x000f], HEX_DIGITS[ch & 0x000f]};
+    escapes['"'] = QUOT_CHARS;
+    escapes['\\'] = BS_CHARS;
+    escapes['\n'] = LF_CHARS;
+    escapes['\r'] = CR_CHARS;
+    escapes['\t'] = TAB_CHARS;
+    return escapes;
   }
 
 }
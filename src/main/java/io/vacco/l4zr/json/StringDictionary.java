@@ -0,0 +1,101 @@
+package io.vacco.l4zr.json;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A bounded dictionary of short ASCII strings, looked up by their bytes in the parser's input. A
+ * string that was already seen is returned as the same instance, without allocating. Once the
+ * dictionary holds <code>capacity</code> strings, new strings are no longer added but lookups keep
+ * working. The table starts small and doubles as strings are added, so parsing a short input
+ * doesn't pay for the full capacity. This implementation is not thread-safe; each parse uses its
+ * own dictionary.
+ */
+class StringDictionary {
+
+  static final int MAX_LENGTH = 64;
+  static final int INITIAL_SIZE = 16;
+
+  private String[] strings;
+  private int[] hashes;
+  private final int capacity;
+  private final int maxSize;
+  private int count;
+
+  StringDictionary(int capacity) {
+    this.capacity = capacity;
+    maxSize = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+    int size = Math.min(INITIAL_SIZE, maxSize);
+    strings = new String[size];
+    hashes = new int[size];
+  }
+
+  /*
+   * Returns the string for the ASCII bytes input[start, end), which must be at most MAX_LENGTH long.
+   */
+  String get(byte[] input, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + input[i];
+    }
+    int mask = strings.length - 1;
+    int slot = (hash ^ hash >>> 16) & mask;
+    String string;
+    while ((string = strings[slot]) != null) {
+      if (hashes[slot] == hash && matches(string, input, start, end)) {
+        return string;
+      }
+      slot = (slot + 1) & mask;
+    }
+    string = new String(input, start, end - start, StandardCharsets.ISO_8859_1);
+    if (count < capacity) {
+      // Keep the table at most half full
+      if ((count + 1) * 2 > strings.length && strings.length < maxSize) {
+        grow();
+        mask = strings.length - 1;
+        slot = (hash ^ hash >>> 16) & mask;
+        while (strings[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+      }
+      strings[slot] = string;
+      hashes[slot] = hash;
+      count++;
+    }
+    return string;
+  }
+
+  private void grow() {
+    String[] oldStrings = strings;
+    int[] oldHashes = hashes;
+    strings = new String[oldStrings.length * 2];
+    hashes = new int[strings.length];
+    int mask = strings.length - 1;
+    for (int i = 0; i < oldStrings.length; i++) {
+      if (oldStrings[i] != null) {
+        int slot = (oldHashes[i] ^ oldHashes[i] >>> 16) & mask;
+        while (strings[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        strings[slot] = oldStrings[i];
+        hashes[slot] = oldHashes[i];
+      }
+    }
+  }
+
+  private static boolean matches(String string, byte[] input, int start, int end) {
+    if (string.length() != end - start) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (string.charAt(i - start) != input[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  int size() {
+    return count;
+  }
+
+}
@@ -0,0 +1,127 @@
+package io.vacco.l4zr.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A writing buffer that encodes characters as UTF-8 straight into a byte array and passes full
+ * buffers on to an output stream, so JSON can be written to a stream without building a String
+ * first. The byte array is borrowed from a per-thread pool and must be handed back with
+ * {@link #close()}. This implementation is not thread-safe. Like {@link WritingBuffer}, it does not
+ * flush or close the wrapped stream.
+ */
+class Utf8WritingBuffer extends Writer {
+
+  static final int BUFFER_SIZE = 8192;
+
+  private static final ThreadLocal<byte[]> POOL = new ThreadLocal<>();
+
+  private final OutputStream stream;
+  private byte[] buffer;
+  private int fill = 0;
+  private char highSurrogate;
+
+  Utf8WritingBuffer(OutputStream stream) {
+    this.stream = stream;
+    buffer = POOL.get();
+    if (buffer == null) {
+      buffer = new byte[BUFFER_SIZE];
+    } else {
+      // Nested writes on the same thread get their own array
+      POOL.set(null);
+    }
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    if (fill > buffer.length - 4) {
+      flush();
+    }
+    encode((char)c);
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    for (int i = off; i < off + len; i++) {
+      if (fill > buffer.length - 4) {
+        flush();
+      }
+      encode(cbuf[i]);
+    }
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    int end = off + len;
+    int i = off;
+    while (i < end) {
+      if (fill > buffer.length - 4) {
+        flush();
+      }
+      // Copy runs of ASCII without going through encode()
+      int limit = Math.min(end, i + buffer.length - fill - 3);
+      char ch;
+      while (i < limit && (ch = str.charAt(i)) < 0x80 && highSurrogate == 0) {
+        buffer[fill++] = (byte)ch;
+        i++;
+      }
+      if (i < end && fill <= buffer.length - 4) {
+        encode(str.charAt(i++));
+      }
+    }
+  }
+
+  private void encode(char ch) {
+    if (highSurrogate != 0) {
+      char high = highSurrogate;
+      highSurrogate = 0;
+      if (Character.isLowSurrogate(ch)) {
+        int cp = Character.toCodePoint(high, ch);
+        buffer[fill++] = (byte)(0xf0 | cp >> 18);
+        buffer[fill++] = (byte)(0x80 | cp >> 12 & 0x3f);
+        buffer[fill++] = (byte)(0x80 | cp >> 6 & 0x3f);
+        buffer[fill++] = (byte)(0x80 | cp & 0x3f);
+        return;
+      }
+      // Unpaired surrogates are replaced, as String.getBytes(UTF_8) does
+      buffer[fill++] = '?';
+    }
+    if (ch < 0x80) {
+      buffer[fill++] = (byte)ch;
+    } else if (ch < 0x800) {
+      buffer[fill++] = (byte)(0xc0 | ch >> 6);
+      buffer[fill++] = (byte)(0x80 | ch & 0x3f);
+    } else if (Character.isHighSurrogate(ch)) {
+      highSurrogate = ch;
+    } else if (Character.isLowSurrogate(ch)) {
+      buffer[fill++] = '?';
+    } else {
+      buffer[fill++] = (byte)(0xe0 | ch >> 12);
+      buffer[fill++] = (byte)(0x80 | ch >> 6 & 0x3f);
+      buffer[fill++] = (byte)(0x80 | ch & 0x3f);
+    }
+  }
+
+  /**
+   * Flushes the internal buffer but does not flush the wrapped stream.
+   */
+  @Override
+  public void flush() throws IOException {
+    stream.write(buffer, 0, fill);
+    fill = 0;
+  }
+
+  /**
+   * Returns the byte array to the pool. Does not flush the internal buffer, nor close or flush the
+   * wrapped stream.
+   */
+  @Override
+  public void close() {
+    if (buffer != null) {
+      POOL.set(buffer);
+      buffer = null;
+    }
+  }
+
+}
@@ -0,0 +1,106 @@
+package io.vacco.l4zr.rqlite;
+
+import java.util.*;
+
+/**
+ * Rows of positional parameters for one SQL statement, packed into
+ * growable primitive arrays. Adding a row copies its slots; no
+ * per-row statement, list or boxed value is created.
+ */
+public class L4Batch {
+
+  public final String sql;
+
+  private byte[]   tags = new byte[64];
+  private long[]   bits = new long[64];
+  private Object[] refs;
+  private int[]    ends = new int[16];
+  private int      rows, slots;
+
+  public L4Batch(String sql) {
+    this.sql = Objects.requireNonNull(sql);
+  }
+
+  private void ensure(int n) {
+    if (slots + n > tags.length) {
+      var cap = Math.max(tags.length << 1, slots + n);
+      tags = Arrays.copyOf(tags, cap);
+      bits = Arrays.copyOf(bits, cap);
+      if (refs != null) {
+        refs = Arrays.copyOf(refs, cap);
+      }
+    }
+    if (rows == ends.length) {
+      ends = Arrays.copyOf(ends, rows << 1);
+    }
+  }
+
+  public L4Batch add(L4Params row) {
+    var n = row.size;
+    ensure(n);
+    System.arraycopy(row.tags, 0, tags, slots, n);
+    System.arraycopy(row.bits, 0, bits, slots, n);
+    if (row.refs != null) {
+      if (refs == null) {
+        refs = new Object[tags.length];
+      }
+      System.arraycopy(row.refs, 0, refs, slots, n);
+    }
+    slots += n;
+    ends[rows++] = slots;
+    return this;
+  }
+
+  public int size() {
+    return rows;
+  }
+
+  public boolean isEmpty() {
+    return rows == 0;
+  }
+
+  public void clear() {
+    if (refs != null) {
+      Arrays.fill(refs, 0, slots, null);
+    }
+    rows = 0;
+    slots = 0;
+  }
+
+  public void writeTo(L4Body out) {
+    if (sql.isBlank()) {
+      throw new IllegalStateException("SQL statement cannot be null or empty");
+    }
+    out.raw('[');
+    var start = 0;
+    for (int r = 0; r < rows; r++) {
+      if (r > 0) {
+        out.raw(',');
+      }
+      out.raw('[').str(sql);
+      for (int i = start; i < ends[r]; i++) {
+        out.raw(',');
+        L4Params.write(out, tags[i], bits[i], refs != null ? refs[i] : null);
+      }
+      out.raw(']');
+      start = ends[r];
+    }
+    out.raw(']');
+  }
+
+  public L4Body toBody() {
+    var out = L4Body.local();
+    try {
+      writeTo(out);
+      return out;
+    } catch (RuntimeException e) {
+      out.release();
+      throw e;
+    }
+  }
+
+  @Override public String toString() {
+    return String.format("[%s, rows: %d]", sql, rows);
+  }
+
+}
@@ -0,0 +1,51 @@
+package io.vacco.l4zr.rqlite;
+
+import java.io.*;
+
+/**
+ * A binary statement parameter read from a stream only when the request body is
+ * written, and base64 encoded into it a chunk at a time, so neither the raw bytes
+ * nor their base64 text are ever held whole.
+ *
+ * The first {@link #kHeadSize} bytes are read up front, so a stream that can't be
+ * read at all fails when the parameter is set. Short values are then complete and
+ * the stream is no longer needed. Longer streams must stay open until the statement
+ * runs, and can only be sent once.
+ */
+public class L4BinaryStream {
+
+  public static final int kHeadSize = 8192;
+
+  private final byte[]      head;
+  private final InputStream rest;
+  private final long        restLength;
+  private boolean           sent;
+
+  /** @param length the number of bytes to send, or -1 to read <code>in</code> to its end. */
+  public L4BinaryStream(InputStream in, long length) throws IOException {
+    var want = length < 0 ? kHeadSize : (int) Math.min(length, kHeadSize);
+    this.head = in.readNBytes(want);
+    var complete = head.length < want || length == head.length;
+    this.rest = complete ? null : in;
+    this.restLength = complete || length < 0 ? -1 : length - head.length;
+  }
+
+  public void writeTo(L4Body out) {
+    if (rest != null) {
+      if (sent) {
+        throw new IllegalStateException("Stream parameter was already sent; set it again to re-execute");
+      }
+      sent = true;
+    }
+    try {
+      out.b64(head, rest, restLength);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read stream parameter", e);
+    }
+  }
+
+  @Override public String toString() {
+    return String.format("[stream, %d+ bytes]", head.length);
+  }
+
+}
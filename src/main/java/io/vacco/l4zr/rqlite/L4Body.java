@@ -0,0 +1,345 @@
+package io.vacco.l4zr.rqlite;
+
+import io.vacco.l4zr.json.JsonValue;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable UTF-8 byte buffer for rqlite request bodies. Statements and
+ * parameters are written straight into it as JSON, with no intermediate
+ * JsonValue tree or String. One instance is kept per thread and reused
+ * across requests; buffers that grew past {@link #kMaxPooledSize} are
+ * dropped on release so a single large batch doesn't pin its memory.
+ * The pooled instance is checked out until released; a body requested while it
+ * is still out, e.g. by a parameter that runs its own query while being written,
+ * gets a fresh buffer instead of overwriting the one in progress.
+ */
+public class L4Body {
+
+  public static final int kInitialSize = 1024;
+  public static final int kMaxPooledSize = 1 << 20;
+  public static final int kB64Chunk = 3 << 14;
+
+  private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] B64_DIGITS =
+    "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+  private static final ThreadLocal<L4Body> local = ThreadLocal.withInitial(() -> new L4Body(kInitialSize));
+
+  private byte[]  buf;
+  private int     len;
+  private boolean inUse;
+
+  public L4Body(int initialSize) {
+    this.buf = new byte[initialSize];
+  }
+
+  public static L4Body local() {
+    var body = local.get();
+    if (body.inUse) {
+      return new L4Body(kInitialSize);
+    }
+    body.inUse = true;
+    body.len = 0;
+    return body;
+  }
+
+  private void ensure(int n) {
+    if (len + n > buf.length) {
+      buf = Arrays.copyOf(buf, Math.max(buf.length << 1, len + n));
+    }
+  }
+
+  public L4Body raw(char c) {
+    ensure(1);
+    buf[len++] = (byte) c;
+    return this;
+  }
+
+  public L4Body ascii(String s) {
+    var n = s.length();
+    ensure(n);
+    for (int i = 0; i < n; i++) {
+      buf[len++] = (byte) s.charAt(i);
+    }
+    return this;
+  }
+
+  public L4Body num(long v) {
+    if (v == Long.MIN_VALUE) {
+      return ascii(Long.toString(v));
+    }
+    ensure(20);
+    if (v < 0) {
+      buf[len++] = '-';
+      v = -v;
+    }
+    var end = len + digits(v);
+    var pos = end;
+    do {
+      buf[--pos] = (byte) ('0' + (v % 10));
+      v /= 10;
+    } while (v != 0);
+    len = end;
+    return this;
+  }
+
+  private static int digits(long v) {
+    var d = 1;
+    while (v >= 10) {
+      v /= 10;
+      d++;
+    }
+    return d;
+  }
+
+  private L4Body decimal(String s) {
+    return ascii(s.endsWith(".0") ? s.substring(0, s.length() - 2) : s);
+  }
+
+  public L4Body num(double v) {
+    if (Double.isInfinite(v) || Double.isNaN(v)) {
+      throw new IllegalArgumentException("Infinite and NaN values not permitted in JSON");
+    }
+    return decimal(Double.toString(v));
+  }
+
+  public L4Body num(float v) {
+    if (Float.isInfinite(v) || Float.isNaN(v)) {
+      throw new IllegalArgumentException("Infinite and NaN values not permitted in JSON");
+    }
+    return decimal(Float.toString(v));
+  }
+
+  private void escape(char c) {
+    ensure(6);
+    buf[len++] = '\\';
+    switch (c) {
+      case '"':  buf[len++] = '"';  break;
+      case '\\': buf[len++] = '\\'; break;
+      case '\n': buf[len++] = 'n';  break;
+      case '\r': buf[len++] = 'r';  break;
+      case '\t': buf[len++] = 't';  break;
+      default:
+        buf[len++] = 'u';
+        buf[len++] = HEX_DIGITS[c >> 12 & 0xf];
+        buf[len++] = HEX_DIGITS[c >> 8 & 0xf];
+        buf[len++] = HEX_DIGITS[c >> 4 & 0xf];
+        buf[len++] = HEX_DIGITS[c & 0xf];
+    }
+  }
+
+  /** Writes a quoted JSON string, escaped the same way as the JsonWriter, encoded as UTF-8. */
+  public L4Body str(String s) {
+    var n = s.length();
+    ensure(n + 2);
+    buf[len++] = '"';
+    for (int i = 0; i < n; i++) {
+      var c = s.charAt(i);
+      if (c < 0x80) {
+        if (c < 0x20 || c == '"' || c == '\\') {
+          escape(c);
+        } else { // copy the whole run of plain ASCII with one bounds check
+          ensure(n - i);
+          var b = buf;
+          var p = len;
+          b[p++] = (byte) c;
+          while (i + 1 < n && (c = s.charAt(i + 1)) < 0x80 && c >= 0x20 && c != '"' && c != '\\') {
+            b[p++] = (byte) c;
+            i++;
+          }
+          len = p;
+        }
+      } else if (c < 0x800) {
+        ensure(2);
+        buf[len++] = (byte) (0xc0 | c >> 6);
+        buf[len++] = (byte) (0x80 | c & 0x3f);
+      } else if (c == '\u2028' || c == '\u2029') {
+        escape(c);
+      } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+        var cp = Character.toCodePoint(c, s.charAt(++i));
+        ensure(4);
+        buf[len++] = (byte) (0xf0 | cp >> 18);
+        buf[len++] = (byte) (0x80 | cp >> 12 & 0x3f);
+        buf[len++] = (byte) (0x80 | cp >> 6 & 0x3f);
+        buf[len++] = (byte) (0x80 | cp & 0x3f);
+      } else if (Character.isSurrogate(c)) {
+        ensure(1);
+        buf[len++] = '?';
+      } else {
+        ensure(3);
+        buf[len++] = (byte) (0xe0 | c >> 12);
+        buf[len++] = (byte) (0x80 | c >> 6 & 0x3f);
+        buf[len++] = (byte) (0x80 | c & 0x3f);
+      }
+    }
+    ensure(1);
+    buf[len++] = '"';
+    return this;
+  }
+
+  /** Writes bytes as a quoted standard base64 string, without an intermediate String. */
+  public L4Body b64(byte[] src) {
+    raw('"');
+    b64Digits(src, 0, src.length);
+    return raw('"');
+  }
+
+  /**
+   * Writes <code>head</code> followed by up to <code>restLength</code> bytes of
+   * <code>rest</code> (all of it if negative, none if <code>rest</code> is null) as
+   * one quoted base64 string. The stream is read and encoded {@link #kB64Chunk}
+   * bytes at a time, so only its encoded form is ever held.
+   */
+  public L4Body b64(byte[] head, InputStream rest, long restLength) throws IOException {
+    raw('"');
+    var carry = rest != null ? head.length % 3 : 0;
+    b64Digits(head, 0, head.length - carry);
+    if (rest != null) {
+      var chunk = new byte[kB64Chunk];
+      System.arraycopy(head, head.length - carry, chunk, 0, carry);
+      var remaining = restLength < 0 ? Long.MAX_VALUE : restLength;
+      while (true) {
+        var want = (int) Math.min(chunk.length - carry, remaining);
+        var read = want > 0 ? rest.readNBytes(chunk, carry, want) : 0;
+        remaining -= read;
+        var total = carry + read;
+        if (read < want || remaining == 0) {
+          b64Digits(chunk, 0, total);
+          break;
+        }
+        carry = total % 3; // keep partial groups for the next chunk, so padding only ends the string
+        b64Digits(chunk, 0, total - carry);
+        System.arraycopy(chunk, total - carry, chunk, 0, carry);
+      }
+    }
+    return raw('"');
+  }
+
+  private void b64Digits(byte[] src, int off, int n) {
+    ensure((n + 2) / 3 * 4);
+    var end = off + n;
+    var i = off;
+    for (; i + 2 < end; i += 3) {
+      var b = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+      buf[len++] = B64_DIGITS[b >>> 18];
+      buf[len++] = B64_DIGITS[b >>> 12 & 0x3f];
+      buf[len++] = B64_DIGITS[b >>> 6 & 0x3f];
+      buf[len++] = B64_DIGITS[b & 0x3f];
+    }
+    if (i < end) {
+      var b = (src[i] & 0xff) << 16 | (i + 1 < end ? (src[i + 1] & 0xff) << 8 : 0);
+      buf[len++] = B64_DIGITS[b >>> 18];
+      buf[len++] = B64_DIGITS[b >>> 12 & 0x3f];
+      buf[len++] = i + 1 < end ? B64_DIGITS[b >>> 6 & 0x3f] : (byte) '=';
+      buf[len++] = '=';
+    }
+  }
+
+  /**
+   * Writes a JSON tree, e.g. statements built with {@link L4Statement#toArray}, as UTF-8
+   * straight into this buffer.
+   */
+  public L4Body json(JsonValue value) {
+    try {
+      value.writeTo(stream());
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return this;
+  }
+
+  /** @return a stream that appends to this buffer. */
+  public OutputStream stream() {
+    return new OutputStream() {
+      @Override public void write(int b) {
+        ensure(1);
+        buf[len++] = (byte) b;
+      }
+      @Override public void write(byte[] b, int off, int n) {
+        ensure(n);
+        System.arraycopy(b, off, buf, len, n);
+        len += n;
+      }
+    };
+  }
+
+  public L4Body value(Object value) {
+    L4Json.write(this, value);
+    return this;
+  }
+
+  /**
+   * @return a key equal to that of any other body with the same contents and
+   *         <code>prefix</code>, hashed once, so requests can be matched by their
+   *         bytes without decoding them into a String.
+   */
+  public Object key(String prefix) {
+    return new Key(prefix, Arrays.copyOf(buf, len));
+  }
+
+  private static final class Key {
+    final String prefix;
+    final byte[] bytes;
+    final int    hash;
+
+    Key(String prefix, byte[] bytes) {
+      this.prefix = prefix;
+      this.bytes = bytes;
+      this.hash = 31 * prefix.hashCode() + Arrays.hashCode(bytes);
+    }
+
+    @Override public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      var k = (Key) o;
+      return hash == k.hash && prefix.equals(k.prefix) && Arrays.equals(bytes, k.bytes);
+    }
+
+    @Override public int hashCode() {
+      return hash;
+    }
+  }
+
+  public int size() {
+    return len;
+  }
+
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buf, len);
+  }
+
+  /**
+   * The publisher reads this buffer in place, so the body must not be
+   * reused until the request that consumes it has completed.
+   */
+  public HttpRequest.BodyPublisher publisher() {
+    return HttpRequest.BodyPublishers.ofByteArray(buf, 0, len);
+  }
+
+  /**
+   * Moves the contents to a fresh array, leaving the current one to any aborted
+   * exchange that may still be reading it. Used when a request is cancelled or
+   * times out before its body was fully sent.
+   */
+  public void detach() {
+    buf = Arrays.copyOf(buf, buf.length);
+  }
+
+  public void release() {
+    if (buf.length > kMaxPooledSize) {
+      buf = new byte[kInitialSize];
+    }
+    len = 0;
+    inUse = false;
+  }
+
+  @Override public String toString() {
+    return new String(buf, 0, len, StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,330 @@
+package io.vacco.l4zr.rqlite;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read result cache, shared by every client pointed at the same rqlite base URL.
+ * Entries are keyed by the rendered query parameters and request body, live no
+ * longer than the freshness of the read that produced them, and are evicted in
+ * LRU order past {@link L4Options#resultCacheSize}.
+ *
+ * Writes sent through any client in this JVM, to any base URL, drop every entry
+ * in every cache whose SQL mentions a table being written, since two base URLs may
+ * well be nodes of the same cluster. Statements whose target can't be determined
+ * (DDL, PRAGMA assignments, etc.) drop everything. Changes this JVM doesn't see
+ * (other processes, triggers, cascades, reads through views) only show up once an
+ * entry expires.
+ */
+public class L4Cache {
+
+  private static final Map<String, L4Cache> caches = new ConcurrentHashMap<>();
+
+  private static final class Cached {
+    final String      key;
+    final L4Response  response;
+    final Set<String> tables;
+    final long        expiresAt;
+
+    Cached(String key, L4Response response, Set<String> tables, long expiresAt) {
+      this.key = key;
+      this.response = response;
+      this.tables = tables;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final Map<String, Set<String>> byTable = new HashMap<>();
+  private final Map<String, Cached> entries = new LinkedHashMap<>(64, 0.75f, true) {
+    @Override protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+      if (size() > L4Options.resultCacheSize) {
+        unindex(eldest.getValue());
+        return true;
+      }
+      return false;
+    }
+  };
+
+  private long epoch;
+
+  public static L4Cache of(String baseUrl) {
+    return caches.computeIfAbsent(baseUrl, k -> new L4Cache());
+  }
+
+  public static boolean enabled() {
+    return L4Options.resultCacheSize > 0;
+  }
+
+  /** @return true for levels whose reads may be served from cache or a shared in-flight request. */
+  public static boolean cacheable(L4Level level) {
+    return level == L4Level.none || level == L4Level.weak;
+  }
+
+  private void unindex(Cached e) {
+    for (var table : e.tables) {
+      var keys = byTable.get(table);
+      if (keys != null) {
+        keys.remove(e.key);
+        if (keys.isEmpty()) {
+          byTable.remove(table);
+        }
+      }
+    }
+  }
+
+  private void remove(Cached e) {
+    if (entries.remove(e.key) != null) {
+      unindex(e);
+    }
+  }
+
+  /** @return a private copy of the cached response, or null on a miss. */
+  public L4Response get(String key) {
+    Cached e;
+    synchronized (this) {
+      e = entries.get(key);
+      if (e == null) {
+        return null;
+      }
+      if (System.nanoTime() - e.expiresAt >= 0) {
+        remove(e);
+        return null;
+      }
+    }
+    return e.response.copy();
+  }
+
+  /**
+   * Snapshot to pass back into {@link #put}. A read that overlaps a write
+   * may have seen the table before the write landed, so it is not cached.
+   */
+  public synchronized long epoch() {
+    return epoch;
+  }
+
+  public void put(String key, long epoch, long ttlNanos, L4Response response, L4Statement ... statements) {
+    if (ttlNanos <= 0 || response.hasErrors()) {
+      return;
+    }
+    var tables = new HashSet<String>();
+    for (var st : statements) {
+      tables.addAll(tables(st.sql));
+    }
+    var e = new Cached(key, response.copy(), tables, System.nanoTime() + ttlNanos);
+    synchronized (this) {
+      if (this.epoch != epoch) {
+        return;
+      }
+      var prev = entries.put(key, e);
+      if (prev != null) {
+        unindex(prev);
+      }
+      for (var table : tables) {
+        byTable.computeIfAbsent(table, t -> new HashSet<>()).add(key);
+      }
+    }
+  }
+
+  /** Applies a write's invalidations to every cache in this JVM. */
+  public static void invalidateAll(String ... sql) {
+    if (caches.isEmpty()) {
+      return;
+    }
+    var targets = new HashSet<String>();
+    var all = false;
+    for (var s : sql) {
+      all = all || !targets(s, targets);
+    }
+    for (var cache : caches.values()) {
+      cache.drop(targets, all);
+    }
+  }
+
+  public static void invalidateAll(L4Statement ... statements) {
+    invalidateAll(sqlOf(statements));
+  }
+
+  private static String[] sqlOf(L4Statement ... statements) {
+    var sql = new String[statements.length];
+    for (int i = 0; i < statements.length; i++) {
+      sql[i] = statements[i].sql;
+    }
+    return sql;
+  }
+
+  public void invalidate(String ... sql) {
+    var targets = new HashSet<String>();
+    var all = false;
+    for (var s : sql) {
+      all = all || !targets(s, targets);
+    }
+    drop(targets, all);
+  }
+
+  private void drop(Set<String> targets, boolean all) {
+    synchronized (this) {
+      epoch++;
+      if (all) {
+        entries.clear();
+        byTable.clear();
+        return;
+      }
+      for (var table : targets) {
+        var keys = byTable.remove(table);
+        if (keys != null) {
+          for (var key : keys.toArray(new String[0])) {
+            var e = entries.get(key);
+            if (e != null) {
+              remove(e);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  public void invalidate(L4Statement ... statements) {
+    invalidate(sqlOf(statements));
+  }
+
+  public synchronized void clear() {
+    epoch++;
+    entries.clear();
+    byTable.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private static boolean isWordChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+  }
+
+  private static int close(String sql, int i, char c) {
+    var end = sql.indexOf(c, i + 1);
+    return end == -1 ? sql.length() : end;
+  }
+
+  /**
+   * Splits SQL into lower-cased words, identifiers (quotes removed) and the
+   * <code>.</code>, parenthesis and <code>;</code> punctuation needed to
+   * find write targets. String literals and comments are dropped.
+   */
+  static List<String> tokens(String sql) {
+    var out = new ArrayList<String>();
+    var n = sql.length();
+    for (int i = 0; i < n; i++) {
+      var c = sql.charAt(i);
+      if (c == '\'') {
+        i = close(sql, i, c);
+      } else if (c == '"' || c == '`' || c == '[') {
+        var end = close(sql, i, c == '[' ? ']' : c);
+        out.add(sql.substring(i + 1, end).toLowerCase());
+        i = end;
+      } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+        var end = sql.indexOf('\n', i + 2);
+        i = end == -1 ? n : end;
+      } else if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {
+        var end = sql.indexOf("*/", i + 2);
+        i = end == -1 ? n : end + 1;
+      } else if (c == '.' || c == '(' || c == ')' || c == ';') {
+        out.add(String.valueOf(c));
+      } else if (isWordChar(c)) {
+        var start = i;
+        while (i + 1 < n && isWordChar(sql.charAt(i + 1))) {
+          i++;
+        }
+        out.add(sql.substring(start, i + 1).toLowerCase());
+      }
+    }
+    return out;
+  }
+
+  /** @return every name a read mentions. Over-matching only costs extra invalidations. */
+  static Set<String> tables(String sql) {
+    var out = new HashSet<String>();
+    for (var tk : tokens(sql)) {
+      if (tk.length() > 1 || tk.length() == 1 && isWordChar(tk.charAt(0))) {
+        out.add(tk);
+      }
+    }
+    return out;
+  }
+
+  private static String name(List<String> tks, int i) {
+    if (i >= tks.size()) {
+      return null;
+    }
+    if (i + 2 < tks.size() && tks.get(i + 1).equals(".")) {
+      return tks.get(i + 2);
+    }
+    var tk = tks.get(i);
+    return tk.isEmpty() || tk.length() == 1 && !isWordChar(tk.charAt(0)) ? null : tk;
+  }
+
+  /**
+   * Collects the tables written by each statement in <code>sql</code>.
+   *
+   * @return false if some statement's effects can't be narrowed to a table.
+   */
+  static boolean targets(String sql, Set<String> out) {
+    var tks = tokens(sql);
+    var start = true;
+    var inWith = false;
+    var depth = 0;
+    for (int i = 0; i < tks.size(); i++) {
+      var tk = tks.get(i);
+      if (tk.equals("(")) {
+        depth++;
+        continue;
+      } else if (tk.equals(")")) {
+        depth--;
+        continue;
+      } else if (tk.equals(";")) {
+        start = true;
+        inWith = false;
+        depth = 0;
+        continue;
+      }
+      if (!start || depth != 0) {
+        continue;
+      }
+      String target = null;
+      switch (tk) {
+        case "with":
+          inWith = true;
+          continue;
+        case "select": case "values": case "explain":
+        case "begin": case "commit": case "end": case "rollback": case "savepoint": case "release":
+          start = false;
+          continue;
+        case "insert": case "replace":
+          while (i < tks.size() && !tks.get(i).equals("into")) {
+            i++;
+          }
+          target = name(tks, i + 1);
+          break;
+        case "update":
+          target = name(tks, i + 1 < tks.size() && tks.get(i + 1).equals("or") ? i + 3 : i + 1);
+          break;
+        case "delete":
+          target = name(tks, i + 2);
+          break;
+        default:
+          if (inWith) {
+            continue;
+          }
+          return false;
+      }
+      if (target == null) {
+        return false;
+      }
+      out.add(target);
+      start = false;
+      inWith = false;
+    }
+    return true;
+  }
+
+}
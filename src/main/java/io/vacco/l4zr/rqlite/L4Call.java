@@ -0,0 +1,87 @@
+package io.vacco.l4zr.rqlite;
+
+import java.net.http.HttpTimeoutException;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Execution context for the requests made on behalf of one statement: its
+ * timeout, which overrides {@link L4Options#timeoutSec} for both the HTTP
+ * exchange and the rqlite <code>timeout</code> parameter, and the in-flight
+ * exchanges that {@link #cancel()} aborts from another thread.
+ */
+public class L4Call {
+
+  private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+
+  private volatile long    timeoutSec = -1;
+  private volatile boolean cancelled;
+
+  public L4Call withTimeoutSec(long timeoutSec) {
+    if (timeoutSec < 0) {
+      throw new IllegalArgumentException(String.format("Invalid timeout [%d]", timeoutSec));
+    }
+    this.timeoutSec = timeoutSec;
+    return this;
+  }
+
+  /** @return this call's timeout, or the global one if none was set. Zero or less means no timeout. */
+  public long getTimeoutSec() {
+    return timeoutSec >= 0 ? timeoutSec : L4Options.timeoutSec;
+  }
+
+  public static long timeoutSec(L4Call call) {
+    return call != null ? call.getTimeoutSec() : L4Options.timeoutSec;
+  }
+
+  /** Clears a previous cancellation. Called when the owning statement starts executing. */
+  public L4Call reset() {
+    cancelled = false;
+    return this;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  public void cancel() {
+    cancelled = true;
+    for (var f : inFlight) {
+      f.cancel(true);
+    }
+  }
+
+  public <T> CompletableFuture<T> track(CompletableFuture<T> f) {
+    inFlight.add(f);
+    f.whenComplete((res, err) -> inFlight.remove(f));
+    if (cancelled) {
+      f.cancel(true);
+    }
+    return f;
+  }
+
+  /**
+   * Waits for <code>f</code>, giving up when this call is cancelled or its timeout
+   * passes. Failures are rethrown unwrapped.
+   */
+  public <T> T await(CompletableFuture<T> f) throws Exception {
+    track(f);
+    try {
+      var t = getTimeoutSec();
+      return t > 0 ? f.get(t, TimeUnit.SECONDS) : f.get();
+    } catch (TimeoutException e) {
+      f.cancel(true);
+      throw new HttpTimeoutException(String.format("Request timed out after %ds", getTimeoutSec()));
+    } catch (ExecutionException e) {
+      var cause = e.getCause();
+      while (cause instanceof CompletionException && cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      throw cause instanceof Exception ? (Exception) cause : e;
+    } catch (InterruptedException e) {
+      f.cancel(true);
+      throw e;
+    }
+  }
+
+}
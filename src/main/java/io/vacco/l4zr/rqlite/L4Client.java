@@ -5,6 +5,9 @@ import java.net.URI;
 import java.net.http.*;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
 import io.vacco.l4zr.jdbc.L4Log;
 import io.vacco.l4zr.json.*;
 
@@ -20,10 +23,25 @@ public class L4Client implements Closeable {
   private final String statusURL;
   private final String nodesURL;
   private final String readyURL;
+  private final L4Cache cache;
+  private final L4Flight flight;
+  private final L4Latency latency;
 
   public  String basicAuthUser = "";
   private String basicAuthPass = "";
 
+  public static final long kAppliedIndexRefreshMs = 100;
+
+  private final AtomicLong sessionIndex = new AtomicLong();
+  private volatile long    appliedIndex;
+  private final AtomicLong appliedCheckedAt = new AtomicLong(System.nanoTime() - kAppliedIndexRefreshMs * 1_000_000);
+
+  private final AtomicInteger         replicaSeq = new AtomicInteger();
+  private volatile boolean            readOnly;
+  private volatile List<L4Node>       replicas = Collections.emptyList();
+  private volatile L4Retry            retry = L4Retry.backoff;
+  private volatile L4Watcher          watcher;
+
   public L4Client(String baseURL, HttpClient client) {
     this.baseUrl = Objects.requireNonNull(baseURL);
     this.executeURL = baseURL + "/db/execute";
@@ -31,43 +49,237 @@ public class L4Client implements Closeable {
     this.statusURL = baseURL + "/status";
     this.nodesURL = baseURL + "/nodes";
     this.readyURL = baseURL + "/readyz";
+    this.cache = L4Cache.of(baseURL);
+    this.flight = L4Flight.of(baseURL);
+    this.latency = L4Latency.of(baseURL);
     this.httpClient = client != null
       ? client
       : L4Http.defaultHttpClient(L4Options.timeoutSec).build();
   }
 
-  private HttpResponse<String> doPostRequest(String url, String body) {
+  private HttpRequest newPost(String url, HttpRequest.BodyPublisher publisher, L4Call call) {
+    var builder = HttpRequest.newBuilder().uri(URI.create(url));
+    var timeoutSec = L4Call.timeoutSec(call);
+    if (timeoutSec > 0) {
+      builder.timeout(Duration.ofSeconds(timeoutSec));
+    }
+    builder.method("POST", publisher);
+    builder.header("Content-Type", "application/json");
+    addBasicAuth(builder);
+    return builder.build();
+  }
+
+  /**
+   * Takes a slot in the target node's {@link L4Limiter}, waiting at most <code>waitMs</code>.
+   * @return the limiter to release once the exchange ends, or null if limits are disabled.
+   */
+  private static L4Limiter admit(String url, long waitMs) {
+    if (!L4Limiter.enabled()) {
+      return null;
+    }
+    var limiter = L4Limiter.of(url);
+    try {
+      if (limiter.acquire(waitMs)) {
+        return limiter;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    throw new LimitError(format("Too many concurrent requests: %s", limiter));
+  }
+
+  private static void release(L4Limiter limiter, long start, boolean ok) {
+    if (limiter != null) {
+      limiter.release(System.nanoTime() - start, ok);
+    }
+  }
+
+  /** Requests made for an {@link L4Call} are sent asynchronously, so that they can be cancelled. */
+  private HttpResponse<byte[]> doPostRequest(String url, L4Body body, L4Call call) {
+    var limiter = admit(url, L4Options.maxQueueMs);
+    var start = System.nanoTime();
+    var ok = false;
     try {
       L4Log.l4Trace("POST {}", body);
-      var builder = HttpRequest.newBuilder().uri(URI.create(url));
-      if (L4Options.timeoutSec > 0) {
-        builder.timeout(Duration.ofSeconds(L4Options.timeoutSec));
+      var req = newPost(url, body.publisher(), call);
+      var res = call == null
+        ? httpClient.send(req, HttpResponse.BodyHandlers.ofByteArray())
+        : call.await(httpClient.sendAsync(req, HttpResponse.BodyHandlers.ofByteArray()));
+      checkResponse(res);
+      ok = true;
+      return res;
+    } catch (Exception e) {
+      if (call != null) {
+        body.detach();
       }
-      builder.method("POST", HttpRequest.BodyPublishers.ofString(body));
-      builder.header("Content-Type", "application/json");
-      addBasicAuth(builder);
-      var req = builder.build();
-      return checkResponse(httpClient.send(req, HttpResponse.BodyHandlers.ofString()));
+      throw new IllegalStateException(format("HTTP POST error: [%s]", url), e);
+    } finally {
+      release(limiter, start, ok);
+    }
+  }
+
+  private CompletableFuture<HttpResponse<byte[]>> sendTimed(HttpRequest req, L4Call call, long waitMs) {
+    var limiter = admit(req.uri().toString(), waitMs);
+    var start = System.nanoTime();
+    CompletableFuture<HttpResponse<byte[]>> res;
+    try {
+      res = httpClient.sendAsync(req, HttpResponse.BodyHandlers.ofByteArray());
+    } catch (RuntimeException e) {
+      release(limiter, start, false);
+      throw e;
+    }
+    if (limiter != null) {
+      res.whenComplete((r, err) -> release(limiter, start, err == null && r.statusCode() == 200));
+    }
+    if (call != null) {
+      call.track(res);
+    }
+    return res.thenApply(r -> {
+      checkResponse(r);
+      latency.record(System.nanoTime() - start);
+      return r;
+    });
+  }
+
+  /**
+   * Sends a read to <code>url</code>. If no response arrives within <code>delayNanos</code>
+   * and the hedge budget allows, the same read goes to <code>hedgeUrl</code> as well. The
+   * first successful response wins and the other exchange is cancelled. Both requests
+   * carry a copy of the body, since the loser may still be sending it after we return.
+   */
+  private HttpResponse<byte[]> doHedgedPost(String url, String hedgeUrl, L4Body body, long delayNanos, L4Call call) {
+    var bytes = body.toByteArray();
+    CompletableFuture<HttpResponse<byte[]>> primary = null, backup = null;
+    try {
+      L4Log.l4Trace("POST {}", body);
+      primary = sendTimed(newPost(url, HttpRequest.BodyPublishers.ofByteArray(bytes), call), call, L4Options.maxQueueMs);
+      try {
+        return primary.get(delayNanos, TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        if (!latency.tryHedge()) {
+          return primary.get();
+        }
+      }
+      L4Log.l4Trace("Hedging read to {} after {}ms", hedgeUrl, TimeUnit.NANOSECONDS.toMillis(delayNanos));
+      try { // never queue for a hedge: a saturated node is the wrong place to send extra load
+        backup = sendTimed(newPost(hedgeUrl, HttpRequest.BodyPublishers.ofByteArray(bytes), call), call, 0);
+      } catch (LimitError e) {
+        return primary.get();
+      }
+      var winner = new CompletableFuture<HttpResponse<byte[]>>();
+      var failures = new AtomicInteger();
+      BiConsumer<HttpResponse<byte[]>, Throwable> done = (res, err) -> {
+        if (err == null) {
+          winner.complete(res);
+        } else if (failures.incrementAndGet() == 2) {
+          winner.completeExceptionally(err);
+        }
+      };
+      primary.whenComplete(done);
+      backup.whenComplete(done);
+      return winner.get();
+    } catch (ExecutionException e) {
+      var cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+      throw new IllegalStateException(format("HTTP POST error: [%s]", url), cause);
     } catch (Exception e) {
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
       throw new IllegalStateException(format("HTTP POST error: [%s]", url), e);
+    } finally {
+      if (primary != null) {
+        primary.cancel(true);
+      }
+      if (backup != null) {
+        backup.cancel(true);
+      }
     }
   }
 
-  private HttpResponse<String> doJSONPostRequest(String url, String body) {
-    return doPostRequest(url, body);
+  /**
+   * @return the reachable node, other than <code>primary</code>, with the lowest reported
+   *         latency. Read-only clients only hedge to other non-voters, so replica reads
+   *         never land on the voters they are meant to offload.
+   */
+  private String hedgeUrl(String primary) {
+    var w = watcher();
+    if (w == null) {
+      return primary;
+    }
+    L4Node best = null;
+    for (var n : readOnly ? w.topology().nonVoters() : w.topology().nodes) {
+      if (n.reachable && n.apiAddr != null && !n.apiAddr.equals(primary)
+        && (best == null || n.latencyMs >= 0 && (best.latencyMs < 0 || n.latencyMs < best.latencyMs))) {
+        best = n;
+      }
+    }
+    return best != null ? best.apiAddr : primary;
+  }
+
+  /**
+   * Runs <code>fn</code> until it succeeds, the retry policy gives up, the call is
+   * cancelled, or the next attempt would start past {@link L4Options#retryDeadlineMs}
+   * (or past the call's own timeout, if shorter).
+   */
+  private <T> T withRetries(boolean safe, L4Call call, Supplier<T> fn) {
+    var deadlineMs = L4Options.retryDeadlineMs;
+    if (call != null && call.getTimeoutSec() > 0) {
+      var callMs = TimeUnit.SECONDS.toMillis(call.getTimeoutSec());
+      deadlineMs = deadlineMs > 0 ? Math.min(deadlineMs, callMs) : callMs;
+    }
+    var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return fn.get();
+      } catch (IllegalStateException e) {
+        if (call != null && call.isCancelled()) {
+          throw e;
+        }
+        var delay = retry.delayMs(attempt, e, safe);
+        if (delay < 0 || deadlineMs > 0 && System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay) - deadline > 0) {
+          throw e;
+        }
+        L4Log.l4Trace("Retrying in {}ms after attempt {}: {}", delay, attempt, e.getMessage());
+        try {
+          Thread.sleep(delay);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  private HttpResponse<byte[]> doJSONPostRequest(String url, L4Body body, boolean safe, L4Call call) {
+    return withRetries(safe, call, () -> doPostRequest(url, body, call));
   }
 
   private HttpResponse<String> doGetRequest(String url) {
+    return doGetRequest(url, HttpResponse.BodyHandlers.ofString());
+  }
+
+  private <T> HttpResponse<T> doGetRequest(String url, HttpResponse.BodyHandler<T> handler) {
+    return withRetries(true, null, () -> doGetRequestOnce(url, handler, L4Options.timeoutSec));
+  }
+
+  private <T> HttpResponse<T> doGetRequestOnce(String url, HttpResponse.BodyHandler<T> handler, long timeoutSec) {
+    var limiter = admit(url, L4Options.maxQueueMs);
+    var start = System.nanoTime();
+    var ok = false;
     try {
       var builder = HttpRequest.newBuilder().uri(URI.create(url)).GET();
       addBasicAuth(builder);
-      if (L4Options.timeoutSec > 0) {
-        builder.timeout(Duration.ofSeconds(L4Options.timeoutSec));
+      if (timeoutSec > 0) {
+        builder.timeout(Duration.ofSeconds(timeoutSec));
       }
       var req = builder.build();
-      return checkResponse(httpClient.send(req, HttpResponse.BodyHandlers.ofString()));
+      var res = checkResponse(httpClient.send(req, handler));
+      ok = true;
+      return res;
     } catch (Exception e) {
       throw new IllegalStateException(format("HTTP GET error: [%s]", url), e);
+    } finally {
+      release(limiter, start, ok);
     }
   }
 
@@ -85,28 +297,239 @@ public class L4Client implements Closeable {
     return this;
   }
 
-  public L4Response execute(boolean transaction, L4Statement ... statements) {
-    var body = L4Statement.toArray(statements).toString();
-    var queryParams = L4Options.queryParams(transaction);
-    var resp = doJSONPostRequest(executeURL + queryParams, body);
-    var rb = resp.body();
-    var node = Json.parse(rb).asObject();
+  /**
+   * Read-only clients reject writes and send every read at <code>level=none</code>
+   * to a reachable non-voting node, round robin. Non-voters come from the topology
+   * watcher when it runs, otherwise from a single <code>/nodes</code> call made here.
+   * Reads go to the base URL when there are no replicas or the chosen one fails.
+   */
+  public L4Client setReadOnly(boolean readOnly) {
+    this.readOnly = readOnly;
+    if (readOnly && watcher() == null) {
+      try {
+        replicas = L4Topology.of(nodesTape(true), null, System.currentTimeMillis()).nonVoters();
+      } catch (Exception e) {
+        L4Log.l4Trace("Unable to discover read replicas: {}", e.getMessage());
+        replicas = Collections.emptyList();
+      }
+    }
+    return this;
+  }
+
+  public boolean isReadOnly() {
+    return readOnly;
+  }
+
+  private String replicaUrl() {
+    var w = watcher();
+    var nodes = w != null ? w.topology().nonVoters() : replicas;
+    var live = new ArrayList<L4Node>(nodes.size());
+    for (var n : nodes) {
+      if (n.reachable && n.apiAddr != null) {
+        live.add(n);
+      }
+    }
+    if (live.isEmpty()) {
+      return null;
+    }
+    return live.get(Math.floorMod(replicaSeq.getAndIncrement(), live.size())).apiAddr;
+  }
+
+  public L4Client withRetry(L4Retry retry) {
+    this.retry = Objects.requireNonNull(retry);
+    return this;
+  }
+
+  /** @return a client with the same endpoint, HTTP client and credentials. */
+  public L4Client copy() {
+    return new L4Client(baseUrl, httpClient).withBasicAuth(basicAuthUser, basicAuthPass).withRetry(retry);
+  }
+
+  /**
+   * Response bodies are parsed as UTF-8 bytes, never decoded to a String. Repeated short
+   * values within a response share one String instance.
+   */
+  private static L4Response toResponse(HttpResponse<byte[]> resp) {
+    var node = Json.parse(resp.body(), L4Options.stringDictionarySize).asObject();
     return new L4Response(resp.statusCode(), node);
   }
 
+  private L4Response execute(L4Call call, boolean transaction, boolean idempotent, L4Body body) {
+    try {
+      if (readOnly) {
+        throw new IllegalStateException(format("Client is read-only: [%s]", baseUrl));
+      }
+      var queryParams = L4Options.queryParams(transaction, true, L4Options.level, null, L4Call.timeoutSec(call));
+      var res = toResponse(doJSONPostRequest(executeURL + queryParams, body, idempotent, call));
+      if (res.raftIndex != null) {
+        sessionIndex.accumulateAndGet(res.raftIndex, Math::max);
+      }
+      return res;
+    } finally {
+      body.release();
+    }
+  }
+
+  /**
+   * @param call       timeout and cancellation handle for this request, or null for the global timeout.
+   * @param idempotent the statements can be applied more than once without harm, so
+   *                   the request is retried even when it may have reached the server.
+   */
+  public L4Response execute(L4Call call, boolean transaction, boolean idempotent, L4Statement ... statements) {
+    try {
+      return execute(call, transaction, idempotent, L4Statement.toBody(statements));
+    } finally {
+      L4Cache.invalidateAll(statements);
+    }
+  }
+
+  public L4Response execute(boolean transaction, boolean idempotent, L4Statement ... statements) {
+    return execute(null, transaction, idempotent, statements);
+  }
+
+  public L4Response execute(boolean transaction, L4Statement ... statements) {
+    return execute(transaction, false, statements);
+  }
+
+  public L4Response execute(L4Call call, boolean transaction, boolean idempotent, L4Batch batch) {
+    try {
+      return execute(call, transaction, idempotent, batch.toBody());
+    } finally {
+      L4Cache.invalidateAll(batch.sql);
+    }
+  }
+
+  public L4Response execute(boolean transaction, boolean idempotent, L4Batch batch) {
+    return execute(null, transaction, idempotent, batch);
+  }
+
+  public L4Response execute(boolean transaction, L4Batch batch) {
+    return execute(transaction, false, batch);
+  }
+
   public L4Response executeSingle(String statement, Object... args) {
     var res = execute(true, new L4Statement().sql(statement).withPositionalParams(args));
     checkResult(res.first());
     return res;
   }
 
+  /**
+   * Reads at <code>level=none</code> are served by whichever node we talk to, which
+   * may not have applied this client's latest write yet. Until it has (per its
+   * <code>/status</code> applied index), reads are upgraded to <code>weak</code>
+   * so the leader serves them. The applied index is refreshed at most once every
+   * {@link #kAppliedIndexRefreshMs}, by a single caller; reads in between go by the
+   * last known value.
+   */
+  public L4Level readLevel(L4Level level) {
+    var written = sessionIndex.get();
+    if (level != L4Level.none || !L4Options.readYourWrites || written == 0 || appliedIndex >= written) {
+      return level;
+    }
+    var now = System.nanoTime();
+    var checkedAt = appliedCheckedAt.get();
+    if (now - checkedAt < kAppliedIndexRefreshMs * 1_000_000 || !appliedCheckedAt.compareAndSet(checkedAt, now)) {
+      return L4Level.weak;
+    }
+    try {
+      var raft = statusTape().path("store", "raft");
+      appliedIndex = Math.max(appliedIndex, raft.getLong("applied_index", 0));
+    } catch (Exception e) {
+      L4Log.l4Trace("Unable to read applied index: {}", e.getMessage());
+    }
+    return appliedIndex >= written ? level : L4Level.weak;
+  }
+
+  public long getSessionIndex() {
+    return sessionIndex.get();
+  }
+
+  public L4Response query(L4Call call, L4Consistency consistency, L4Statement ... statements) {
+    var level = readOnly
+      ? L4Level.none
+      : readLevel(consistency != null ? consistency.levelOr(L4Options.level) : L4Options.level);
+    var queryParams = L4Options.queryParams(false, false, level, consistency, L4Call.timeoutSec(call));
+    var body = L4Statement.toBody(statements);
+    var cached = L4Cache.enabled();
+    if (!L4Cache.cacheable(level) || !cached && !L4Options.singleFlight) {
+      return query(queryParams, body, hedgeable(level), call);
+    }
+    // replica-routed reads may lag this node, so they never share responses with reads sent to it
+    var route = readOnly ? "replica:" + queryParams : queryParams;
+    var key = cached ? route + body : null;
+    if (cached) {
+      var hit = cache.get(key);
+      if (hit != null) {
+        body.release();
+        return hit;
+      }
+    }
+    var epoch = cache.epoch();
+    var freshnessSec = consistency != null
+      ? consistency.freshnessSecOr(L4Options.freshnessSec)
+      : L4Options.freshnessSec;
+    Supplier<L4Response> fetch = () -> {
+      var res = query(queryParams, body, hedgeable(level), call);
+      if (cached) {
+        cache.put(key, epoch, TimeUnit.SECONDS.toNanos(freshnessSec), res, statements);
+      }
+      return res;
+    };
+    if (!L4Options.singleFlight) {
+      return fetch.get();
+    }
+    try { // a write since the snapshot starts a new flight, so readers never join a pre-write request
+      return flight.run(cached ? epoch + key : body.key(epoch + route), fetch, call);
+    } finally {
+      body.release();
+    }
+  }
+
+  public L4Response query(L4Consistency consistency, L4Statement ... statements) {
+    return query(null, consistency, statements);
+  }
+
+  /**
+   * A hedge can go to any node, and {@link #readLevel} only checked the base URL, so
+   * <code>none</code> reads are not hedged once this session has written.
+   * <code>weak</code> reads are always served by the leader, wherever they land.
+   */
+  private boolean hedgeable(L4Level level) {
+    return L4Cache.cacheable(level)
+      && (level != L4Level.none || !L4Options.readYourWrites || sessionIndex.get() == 0);
+  }
+
+  /** @param relaxed the read is at a level another node may serve, so it can be hedged. */
+  private L4Response query(String queryParams, L4Body body, boolean relaxed, L4Call call) {
+    try {
+      var replica = readOnly ? replicaUrl() : null;
+      if (relaxed && L4Options.hedgePercentile > 0) {
+        var delay = latency.hedgeDelayNanos();
+        var primary = replica != null ? replica : baseUrl;
+        var path = "/db/query" + queryParams;
+        if (delay >= 0) {
+          return toResponse(withRetries(true, call, () -> doHedgedPost(primary + path, hedgeUrl(primary) + path, body, delay, call)));
+        }
+        var start = System.nanoTime();
+        var res = toResponse(doJSONPostRequest(primary + path, body, true, call));
+        latency.record(System.nanoTime() - start);
+        return res;
+      }
+      if (replica != null) {
+        try {
+          return toResponse(doPostRequest(replica + "/db/query" + queryParams, body, call));
+        } catch (Exception e) {
+          L4Log.l4Trace("Read replica {} failed, falling back to {}: {}", replica, baseUrl, e.getMessage());
+        }
+      }
+      return toResponse(doJSONPostRequest(queryURL + queryParams, body, true, call));
+    } finally {
+      body.release();
+    }
+  }
+
   public L4Response query(L4Statement ... statements) {
-    var body = L4Statement.toArray(statements).toString();
-    var queryParams = L4Options.queryParams(false);
-    var resp = doJSONPostRequest(queryURL + queryParams, body);
-    var rb = resp.body();
-    var node = Json.parse(rb).asObject();
-    return new L4Response(resp.statusCode(), node);
+    return query((L4Call) null, null, statements);
   }
 
   public L4Response querySingle(String statement, Object... args) {
@@ -125,20 +548,69 @@ public class L4Client implements Closeable {
     return Json.parse(resp.body());
   }
 
-  public String ready() {
-    var resp = doGetRequest(readyURL);
-    return resp.body();
+  /** @param nonVoters include read-only nodes, in the <code>ver=2</code> response format. */
+  public JsonValue nodes(boolean nonVoters) {
+    var resp = doGetRequest(nodesURL + (nonVoters ? "?nonvoters&ver=2" : "?ver=2"));
+    return Json.parse(resp.body());
   }
 
-  public void withTxTimeoutSec(long txTimeoutSec) {
-    if (txTimeoutSec < 0) {
-      throw new IllegalArgumentException(format("Invalid timeout [%d]", txTimeoutSec));
+  /**
+   * Like {@link #status()}, but only indexes the response; fields are decoded as
+   * they are read. Use this when a few fields of the (large) status document are needed.
+   */
+  public JsonTape.Node statusTape() {
+    var resp = doGetRequest(statusURL, HttpResponse.BodyHandlers.ofByteArray());
+    return JsonTape.parse(resp.body()).root();
+  }
+
+  /**
+   * Like {@link #statusTape()}, but a single attempt with no retries, bounded by
+   * <code>timeoutSec</code> (no timeout if zero or less). Meant for liveness checks.
+   */
+  public JsonTape.Node statusTape(long timeoutSec) {
+    var resp = doGetRequestOnce(statusURL, HttpResponse.BodyHandlers.ofByteArray(), timeoutSec);
+    return JsonTape.parse(resp.body()).root();
+  }
+
+  /** Like {@link #nodes(boolean)}, but only indexes the response. */
+  public JsonTape.Node nodesTape(boolean nonVoters) {
+    var resp = doGetRequest(nodesURL + (nonVoters ? "?nonvoters&ver=2" : "?ver=2"), HttpResponse.BodyHandlers.ofByteArray());
+    return JsonTape.parse(resp.body()).root();
+  }
+
+  /**
+   * @return the shared topology watcher for this base URL, or null if polling is disabled.
+   *         The client holds a reference to it until {@link #close()}.
+   */
+  public L4Watcher watcher() {
+    if (L4Options.topologyPollMs <= 0) {
+      return null;
+    }
+    var w = watcher;
+    if (w != null && !w.isClosed()) {
+      return w;
+    }
+    synchronized (this) {
+      if (watcher == null || watcher.isClosed()) {
+        watcher = L4Watcher.acquire(this);
+      }
+      return watcher;
     }
-    L4Options.timeoutSec = txTimeoutSec == 0 ? -1 : txTimeoutSec;
   }
 
-  public long getTxTimeoutSec() {
-    return L4Options.timeoutSec;
+  /** @return the latest polled topology, without blocking. Empty if polling is disabled. */
+  public L4Topology topology() {
+    var w = watcher();
+    return w != null ? w.topology() : L4Topology.empty;
+  }
+
+  public String ready() {
+    var resp = doGetRequest(readyURL);
+    return resp.body();
+  }
+
+  public L4Cache getCache() {
+    return cache;
   }
 
   public String getBaseUrl() {
@@ -146,6 +618,12 @@ public class L4Client implements Closeable {
   }
 
   @Override public void close() {
+    synchronized (this) {
+      if (watcher != null) {
+        L4Watcher.release(watcher);
+        watcher = null;
+      }
+    }
     // only Java 21+ supports explicitly closing the http client... sigh...
     this.httpClient = null;
   }
@@ -0,0 +1,104 @@
+package io.vacco.l4zr.rqlite;
+
+import java.util.Objects;
+
+/**
+ * Per-request override of the read consistency settings in {@link L4Options}.
+ * Any field left <code>null</code> falls back to the global option.
+ */
+public final class L4Consistency {
+
+  public final L4Level level;
+  public final Long    freshnessSec;
+  public final Boolean freshnessStrict;
+
+  public L4Consistency(L4Level level, Long freshnessSec, Boolean freshnessStrict) {
+    this.level = level;
+    this.freshnessSec = freshnessSec;
+    this.freshnessStrict = freshnessStrict;
+  }
+
+  public L4Level levelOr(L4Level fallback) {
+    return level != null ? level : fallback;
+  }
+
+  public long freshnessSecOr(long fallback) {
+    return freshnessSec != null ? freshnessSec : fallback;
+  }
+
+  public boolean freshnessStrictOr(boolean fallback) {
+    return freshnessStrict != null ? freshnessStrict : fallback;
+  }
+
+  /** @return <code>over</code> layered on top of <code>base</code>, either of which may be null. */
+  public static L4Consistency merge(L4Consistency base, L4Consistency over) {
+    if (base == null) {
+      return over;
+    }
+    if (over == null) {
+      return base;
+    }
+    return new L4Consistency(
+      over.level != null ? over.level : base.level,
+      over.freshnessSec != null ? over.freshnessSec : base.freshnessSec,
+      over.freshnessStrict != null ? over.freshnessStrict : base.freshnessStrict
+    );
+  }
+
+  /**
+   * Parses hint text such as <code>level=none freshness=2s freshness_strict=true</code>.
+   * Unknown keys and malformed values are ignored.
+   *
+   * @return the parsed override, or null if the hint sets nothing.
+   */
+  public static L4Consistency parse(String hint) {
+    L4Level level = null;
+    Long freshnessSec = null;
+    Boolean freshnessStrict = null;
+    for (var pair : hint.trim().split("[\\s,]+")) {
+      var kv = pair.split("=", 2);
+      if (kv.length != 2) {
+        continue;
+      }
+      var key = kv[0].toLowerCase();
+      var val = kv[1].toLowerCase();
+      try {
+        if (key.equals(L4Options.kLevel)) {
+          level = L4Level.valueOf(val);
+        } else if (key.equals("freshness")) {
+          freshnessSec = Long.parseLong(val.endsWith("s") ? val.substring(0, val.length() - 1) : val);
+        } else if (key.equals("freshness_strict")) {
+          freshnessStrict = Boolean.parseBoolean(val);
+        }
+      } catch (IllegalArgumentException e) {
+        // not a valid hint value, keep the default
+      }
+    }
+    if (level == null && freshnessSec == null && freshnessStrict == null) {
+      return null;
+    }
+    return new L4Consistency(level, freshnessSec, freshnessStrict);
+  }
+
+  @Override public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof L4Consistency)) {
+      return false;
+    }
+    var c = (L4Consistency) o;
+    return level == c.level
+      && Objects.equals(freshnessSec, c.freshnessSec)
+      && Objects.equals(freshnessStrict, c.freshnessStrict);
+  }
+
+  @Override public int hashCode() {
+    return Objects.hash(level, freshnessSec, freshnessStrict);
+  }
+
+  @Override public String toString() {
+    return String.format("[level: %s, freshness: %s, strict: %s]", level, freshnessSec, freshnessStrict);
+  }
+
+}
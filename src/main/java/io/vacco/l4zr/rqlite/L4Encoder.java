@@ -0,0 +1,8 @@
+package io.vacco.l4zr.rqlite;
+
+@FunctionalInterface
+public interface L4Encoder<T> {
+
+  void encode(L4Body out, T value);
+
+}
@@ -1,17 +1,39 @@
 package io.vacco.l4zr.rqlite;
 
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 
 import static java.lang.String.format;
 
 public class L4Err {
 
-  public static HttpResponse<String> checkResponse(HttpResponse<String> res) {
+  public static class StatusError extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public final int statusCode;
+
+    public StatusError(int statusCode, String message) {
+      super(message);
+      this.statusCode = statusCode;
+    }
+  }
+
+  /** A request turned away by a node's {@link L4Limiter} before being sent. */
+  public static class LimitError extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public LimitError(String message) {
+      super(message);
+    }
+  }
+
+  public static <T> HttpResponse<T> checkResponse(HttpResponse<T> res) {
     if (res.statusCode() != 200) {
       var body = res.body();
-      throw new IllegalStateException(format(
+      var text = body instanceof byte[] ? new String((byte[]) body, StandardCharsets.UTF_8) : body;
+      throw new StatusError(res.statusCode(), format(
         "HTTP response error: [%d]%s", res.statusCode(),
-        body != null ? format(" - %s", body) : ""
+        text != null ? format(" - %s", text) : ""
       ));
     }
     return res;
@@ -0,0 +1,105 @@
+package io.vacco.l4zr.rqlite;
+
+import java.net.http.HttpTimeoutException;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical in-flight reads against the same rqlite base URL.
+ * The first caller for a key runs the request; callers arriving while it is
+ * in flight wait for its response instead of sending their own. Since result
+ * rows are mutable, every caller that joined receives its own copy; the first
+ * caller keeps the original when nobody joined. If the shared request is
+ * aborted by its own caller's cancellation or timeout, waiting callers send
+ * their own instead; a waiter whose own timeout passes first fails with it.
+ */
+public class L4Flight {
+
+  private static final Map<String, L4Flight> flights = new ConcurrentHashMap<>();
+
+  private static final class Call {
+    final CompletableFuture<L4Response> result = new CompletableFuture<>();
+    int     joined;
+    boolean closed;
+
+    synchronized boolean join() {
+      if (!closed) {
+        joined++;
+      }
+      return !closed;
+    }
+
+    /** @return true if any caller joined; none can join afterwards. */
+    synchronized boolean close() {
+      closed = true;
+      return joined > 0;
+    }
+  }
+
+  private final Map<Object, Call> calls = new ConcurrentHashMap<>();
+
+  public static L4Flight of(String baseUrl) {
+    return flights.computeIfAbsent(baseUrl, k -> new L4Flight());
+  }
+
+  /**
+   * @param key equal for requests that may share a response, e.g. a String or {@link L4Body#key}.
+   * @param ctx the caller's timeout and cancellation handle, honored while waiting on a shared request.
+   */
+  public L4Response run(Object key, Supplier<L4Response> call, L4Call ctx) {
+    var own = new Call();
+    var shared = calls.putIfAbsent(key, own);
+    if (shared != null && !shared.join()) {
+      return call.get(); // the shared request just finished; not worth waiting on its removal
+    }
+    if (shared == null) {
+      try {
+        var res = call.get();
+        var joined = own.close();
+        var mine = joined ? res.copy() : res;
+        own.result.complete(res);
+        return mine;
+      } catch (Throwable t) {
+        own.close();
+        own.result.completeExceptionally(t);
+        throw t;
+      } finally {
+        calls.remove(key, own);
+      }
+    }
+    var waiting = shared.result.copy(); // cancelled by our own timeout or cancellation, never by the leader's
+    try {
+      return (ctx != null ? ctx.await(waiting) : waiting.join()).copy();
+    } catch (Exception e) {
+      var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+      if (!waiting.isCancelled() && aborted(cause) && (ctx == null || !ctx.isCancelled())) {
+        return call.get(); // the leader's statement was cancelled or timed out, not ours
+      }
+      if (cause instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      throw cause instanceof IllegalStateException
+        ? (IllegalStateException) cause
+        : new IllegalStateException(cause.getMessage(), cause);
+    }
+  }
+
+  private static boolean aborted(Throwable t) {
+    for (var e = t; e != null; e = e.getCause()) {
+      if (e instanceof CancellationException || e instanceof HttpTimeoutException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public L4Response run(Object key, Supplier<L4Response> call) {
+    return run(key, call, null);
+  }
+
+  public int inFlight() {
+    return calls.size();
+  }
+
+}
@@ -1,28 +1,116 @@
 package io.vacco.l4zr.rqlite;
 
 import io.vacco.l4zr.json.*;
+import java.math.*;
+import java.time.temporal.TemporalAccessor;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class L4Json {
 
+  private static final Map<Class<?>, L4Encoder<?>> encoders = new ConcurrentHashMap<>();
+  private static final Map<Class<?>, L4Encoder<Object>> resolved = new ConcurrentHashMap<>();
+  private static final L4Encoder<Object> toStringEncoder = (out, v) -> out.str(v.toString());
+
+  private static final int kMaxNames = 4096;
+  private static final Map<String, String> names = new ConcurrentHashMap<>();
+
+  static {
+    register(String.class, L4Body::str);
+    register(Character.class, (out, v) -> out.str(v.toString()));
+    register(Long.class, L4Body::num);
+    register(Integer.class, L4Body::num);
+    register(Short.class, L4Body::num);
+    register(Byte.class, L4Body::num);
+    register(Double.class, L4Body::num);
+    register(Float.class, L4Body::num);
+    register(Boolean.class, (out, v) -> out.ascii(v ? "true" : "false"));
+    register(byte[].class, L4Body::b64);
+    register(L4BinaryStream.class, (out, v) -> v.writeTo(out));
+    register(BigDecimal.class, (out, v) -> out.str(v.toPlainString()));
+    register(BigInteger.class, (out, v) -> {
+      if (v.bitLength() < 64) {
+        out.num(v.longValue());
+      } else {
+        out.str(v.toString());
+      }
+    });
+    register(java.sql.Timestamp.class, (out, v) -> out.str(v.toString()));
+    register(java.sql.Date.class, (out, v) -> out.str(v.toString()));
+    register(java.sql.Time.class, (out, v) -> out.str(v.toString()));
+    register(java.util.Date.class, (out, v) -> out.str(new java.sql.Timestamp(v.getTime()).toString()));
+    register(TemporalAccessor.class, (out, v) -> out.str(v.toString()));
+    register(UUID.class, (out, v) -> out.str(v.toString()));
+    register(Enum.class, (out, v) -> out.str(v.name()));
+    register(java.sql.Blob.class, (out, v) -> { throw unresolved(v); });
+    register(java.sql.Clob.class, (out, v) -> { throw unresolved(v); });
+  }
+
+  /**
+   * Column names and types repeat across every response for the same statement, so
+   * the instances are shared process wide instead of kept once per result.
+   */
+  public static String name(String s) {
+    if (s == null) {
+      return null;
+    }
+    var known = names.get(s);
+    if (known != null) {
+      return known;
+    }
+    if (names.size() >= kMaxNames) {
+      names.clear();
+    }
+    known = names.putIfAbsent(s, s);
+    return known != null ? known : s;
+  }
+
   public static List<String> toStringList(JsonArray array) {
-    var list = new ArrayList<String>();
+    var list = new ArrayList<String>(array.size());
     for (var value : array) {
       list.add(value.asString());
     }
     return list;
   }
 
+  public static List<String> toNameList(JsonArray array) {
+    var list = new ArrayList<String>(array.size());
+    for (var value : array) {
+      list.add(name(value.isNull() ? null : value.asString()));
+    }
+    return list;
+  }
+
   public static List<List<String>> toValuesList(JsonArray valuesArray) {
+    return toValuesList(valuesArray, null);
+  }
+
+  /**
+   * @param types column types. Cells of BLOB columns are decoded from base64 here,
+   *              once, and kept as bytes; cells that aren't valid base64 stay text.
+   */
+  public static List<List<String>> toValuesList(JsonArray valuesArray, List<String> types) {
     var values = new ArrayList<List<String>>();
+    var blobs = new boolean[types != null ? types.size() : 0];
+    for (int i = 0; i < blobs.length; i++) {
+      blobs[i] = "blob".equalsIgnoreCase(types.get(i));
+    }
     for (var rowValue : valuesArray) {
       var row = rowValue.asArray();
-      var rowValues = new ArrayList<String>();
+      var rowValues = new L4Row(row.size());
       for (int i = 0; i < row.size(); i++) {
-        if (row.get(i).isString()) {
-          rowValues.add(row.get(i).asString());
+        var cell = row.get(i);
+        if (cell.isString()) {
+          var decoded = i < blobs.length && blobs[i] ? fromB64(cell.asString()) : null;
+          if (decoded != null) {
+            rowValues.addBytes(decoded);
+          } else {
+            rowValues.add(cell.asString());
+          }
+        } else if (cell.isLong()) {
+          rowValues.addLong(cell.asLong());
         } else {
-          rowValues.add(row.get(i).toString());
+          rowValues.add(cell.toString());
         }
       }
       values.add(rowValues);
@@ -30,6 +118,68 @@ public class L4Json {
     return values;
   }
 
+  private static final byte[] b64Values = new byte[128];
+
+  static {
+    Arrays.fill(b64Values, (byte) -1);
+    var digits = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    for (int i = 0; i < digits.length(); i++) {
+      b64Values[digits.charAt(i)] = (byte) i;
+    }
+  }
+
+  /**
+   * Decodes standard base64, padded or not, reading the String's characters directly
+   * instead of copying them out first as <code>Base64.Decoder</code> does.
+   *
+   * @return the decoded bytes, or null if <code>s</code> is not valid base64.
+   */
+  public static byte[] fromB64(String s) {
+    var n = s.length();
+    if (n > 0 && s.charAt(n - 1) == '=') {
+      n--;
+      if (n > 0 && s.charAt(n - 1) == '=') {
+        n--;
+      }
+      if (s.length() % 4 != 0) {
+        return null;
+      }
+    }
+    if (n % 4 == 1) {
+      return null;
+    }
+    var out = new byte[n / 4 * 3 + Math.max(n % 4 - 1, 0)];
+    var o = 0;
+    var i = 0;
+    for (; i + 4 <= n; i += 4) {
+      int d0 = digit(s, i), d1 = digit(s, i + 1), d2 = digit(s, i + 2), d3 = digit(s, i + 3);
+      if ((d0 | d1 | d2 | d3) < 0) {
+        return null;
+      }
+      var b = d0 << 18 | d1 << 12 | d2 << 6 | d3;
+      out[o++] = (byte) (b >> 16);
+      out[o++] = (byte) (b >> 8);
+      out[o++] = (byte) b;
+    }
+    if (i < n) {
+      int d0 = digit(s, i), d1 = digit(s, i + 1), d2 = i + 2 < n ? digit(s, i + 2) : 0;
+      if ((d0 | d1 | d2) < 0) {
+        return null;
+      }
+      var b = d0 << 18 | d1 << 12 | d2 << 6;
+      out[o++] = (byte) (b >> 16);
+      if (i + 2 < n) {
+        out[o] = (byte) (b >> 8);
+      }
+    }
+    return out;
+  }
+
+  private static int digit(String s, int i) {
+    var c = s.charAt(i);
+    return c < 128 ? b64Values[c] : -1;
+  }
+
   public static JsonValue toJsonValue(Object value) {
     if (value == null) {
       return Json.NULL;
@@ -48,7 +198,73 @@ public class L4Json {
     } else if (value instanceof byte[]) {
       return Json.value(java.util.Base64.getEncoder().encodeToString((byte[]) value));
     } else {
-      return Json.value(value.toString());
+      return Json.parse(new L4Body(64).value(value).toByteArray());
+    }
+  }
+
+  private static IllegalStateException unresolved(Object v) {
+    return new IllegalStateException(String.format(
+      "LOB parameters must be set through L4Statement or L4Params: [%s]", v.getClass().getName()
+    ));
+  }
+
+  /**
+   * Reads LOB parameters when they are set, as the JDBC setters do, so writing a
+   * statement never calls back into them: a Blob becomes an {@link L4BinaryStream}
+   * and a Clob its text. Other values are returned as is.
+   */
+  public static Object param(Object v) {
+    try {
+      if (v instanceof java.sql.Blob) {
+        var blob = (java.sql.Blob) v;
+        return new L4BinaryStream(blob.getBinaryStream(), blob.length());
+      } else if (v instanceof java.sql.Clob) {
+        var clob = (java.sql.Clob) v;
+        return clob.getSubString(1, (int) clob.length());
+      }
+      return v;
+    } catch (java.sql.SQLException | java.io.IOException e) {
+      throw new IllegalStateException("Unable to read LOB parameter", e);
+    }
+  }
+
+  public static <T> void register(Class<T> type, L4Encoder<? super T> encoder) {
+    encoders.put(Objects.requireNonNull(type), Objects.requireNonNull(encoder));
+    resolved.clear();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static L4Encoder<Object> lookup(Class<?> type) {
+    for (var c = type; c != null; c = c.getSuperclass()) {
+      var enc = encoders.get(c);
+      if (enc != null) {
+        return (L4Encoder<Object>) enc;
+      }
+    }
+    var pending = new ArrayDeque<Class<?>>();
+    for (var c = type; c != null; c = c.getSuperclass()) {
+      pending.addAll(Arrays.asList(c.getInterfaces()));
+    }
+    while (!pending.isEmpty()) {
+      var iface = pending.poll();
+      var enc = encoders.get(iface);
+      if (enc != null) {
+        return (L4Encoder<Object>) enc;
+      }
+      pending.addAll(Arrays.asList(iface.getInterfaces()));
+    }
+    return toStringEncoder;
+  }
+
+  public static L4Encoder<Object> encoderOf(Class<?> type) {
+    return resolved.computeIfAbsent(type, L4Json::lookup);
+  }
+
+  public static void write(L4Body out, Object value) {
+    if (value == null) {
+      out.ascii("null");
+    } else {
+      encoderOf(value.getClass()).encode(out, value);
     }
   }
 
@@ -0,0 +1,62 @@
+package io.vacco.l4zr.rqlite;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recent read latencies against one rqlite base URL, used to decide when a
+ * read is slow enough to hedge. Keeps a ring of the last {@link #kWindow}
+ * samples and recomputes the {@link L4Options#hedgePercentile} cutoff every
+ * {@link #kRefreshEvery} samples. Hedges are paid for out of a token budget:
+ * every recorded read adds <code>1 - percentile / 100</code> tokens, so extra
+ * load stays near the fraction of reads expected past the percentile, even
+ * while the whole cluster slows down and the window catches up.
+ */
+public class L4Latency {
+
+  public static final int kWindow = 256, kMinSamples = 32, kRefreshEvery = 16, kMaxTokens = 10;
+
+  private static final Map<String, L4Latency> latencies = new ConcurrentHashMap<>();
+
+  private final long[] window = new long[kWindow];
+  private int     count, next, sinceRefresh;
+  private double  tokens;
+  private volatile long cutoffNanos = -1;
+
+  public static L4Latency of(String baseUrl) {
+    return latencies.computeIfAbsent(baseUrl, k -> new L4Latency());
+  }
+
+  public synchronized void record(long nanos) {
+    window[next] = nanos;
+    next = (next + 1) % kWindow;
+    count = Math.min(count + 1, kWindow);
+    tokens = Math.min(kMaxTokens, tokens + Math.max(0, 1 - L4Options.hedgePercentile / 100));
+    if (++sinceRefresh >= kRefreshEvery && count >= kMinSamples) {
+      var sorted = Arrays.copyOf(window, count);
+      Arrays.sort(sorted);
+      var idx = (int) Math.ceil(L4Options.hedgePercentile / 100 * count) - 1;
+      cutoffNanos = sorted[Math.max(0, Math.min(count - 1, idx))];
+      sinceRefresh = 0;
+    }
+  }
+
+  /** @return how long to wait on a read before hedging it, or -1 until enough samples exist. */
+  public long hedgeDelayNanos() {
+    var cutoff = cutoffNanos;
+    if (cutoff < 0) {
+      return -1;
+    }
+    return Math.max(cutoff, L4Options.hedgeMinDelayMs * 1_000_000);
+  }
+
+  /** @return true, spending one token, if the hedge budget allows another request. */
+  public synchronized boolean tryHedge() {
+    if (tokens < 1) {
+      return false;
+    }
+    tokens -= 1;
+    return true;
+  }
+
+}
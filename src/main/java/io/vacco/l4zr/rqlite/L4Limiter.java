@@ -0,0 +1,142 @@
+package io.vacco.l4zr.rqlite;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Bulkhead for one rqlite node (scheme, host and port), shared by every client
+ * in the JVM. At most {@link L4Options#maxConcurrency} requests are in flight at
+ * once; callers past that wait up to {@link L4Options#maxQueueMs}, at most
+ * {@link L4Options#maxQueue} of them, and are rejected after that.
+ *
+ * With {@link L4Options#adaptiveConcurrency}, the limit follows AIMD: each
+ * request that fails, or takes longer than {@link L4Options#latencyTargetMs},
+ * cuts the limit by {@link #kBackoffRatio}, once per congestion event: requests
+ * already in flight when the limit was cut do not cut it again. Each fast
+ * success grows it by
+ * <code>1 / limit</code>, i.e. one slot per window of requests, up to
+ * <code>maxConcurrency</code>.
+ */
+public class L4Limiter {
+
+  public static final double kBackoffRatio = 0.9;
+
+  private static final Map<String, L4Limiter> limiters = new ConcurrentHashMap<>();
+
+  private final String    node;
+  private final Lock      lock = new ReentrantLock();
+  private final Condition free = lock.newCondition();
+
+  private int    inFlight, waiting;
+  private double limit = -1;
+  private long   cutAt;
+
+  private L4Limiter(String node) {
+    this.node = node;
+  }
+
+  public static boolean enabled() {
+    return L4Options.maxConcurrency > 0;
+  }
+
+  /** @return the part of <code>url</code> that names a node, e.g. <code>http://host:4001</code>. */
+  static String nodeOf(String url) {
+    var scheme = url.indexOf("://");
+    var path = url.indexOf('/', scheme == -1 ? 0 : scheme + 3);
+    var query = url.indexOf('?');
+    var end = path != -1 ? path : query != -1 ? query : url.length();
+    return url.substring(0, end);
+  }
+
+  public static L4Limiter of(String url) {
+    return limiters.computeIfAbsent(nodeOf(url), L4Limiter::new);
+  }
+
+  private int currentLimit() {
+    var max = L4Options.maxConcurrency;
+    if (!L4Options.adaptiveConcurrency) {
+      return max;
+    }
+    if (limit < 0 || limit > max) {
+      limit = max;
+    }
+    return Math.max(1, (int) limit);
+  }
+
+  public int getLimit() {
+    lock.lock();
+    try {
+      return currentLimit();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getInFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** @return true if a slot was taken within <code>waitMs</code>. */
+  public boolean acquire(long waitMs) throws InterruptedException {
+    lock.lock();
+    try {
+      if (inFlight < currentLimit()) {
+        inFlight++;
+        return true;
+      }
+      if (waitMs <= 0 || waiting >= L4Options.maxQueue) {
+        return false;
+      }
+      waiting++;
+      try {
+        var nanos = TimeUnit.MILLISECONDS.toNanos(waitMs);
+        while (inFlight >= currentLimit()) {
+          if (nanos <= 0) {
+            return false;
+          }
+          nanos = free.awaitNanos(nanos);
+        }
+        inFlight++;
+        return true;
+      } finally {
+        waiting--;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void release(long latencyNanos, boolean ok) {
+    lock.lock();
+    try {
+      inFlight--;
+      if (L4Options.adaptiveConcurrency) {
+        var max = currentLimit();
+        var slow = L4Options.latencyTargetMs > 0 && latencyNanos > TimeUnit.MILLISECONDS.toNanos(L4Options.latencyTargetMs);
+        var now = System.nanoTime();
+        if (!ok || slow) {
+          if (cutAt == 0 || now - latencyNanos - cutAt > 0) {
+            limit = Math.max(1, limit * kBackoffRatio);
+            cutAt = now;
+          }
+        } else {
+          limit = Math.min(L4Options.maxConcurrency, limit + 1.0 / Math.max(max, 1));
+        }
+      }
+      free.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override public String toString() {
+    return String.format("[%s, limit: %d, inFlight: %d]", node, getLimit(), getInFlight());
+  }
+
+}
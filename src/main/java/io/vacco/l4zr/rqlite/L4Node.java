@@ -0,0 +1,64 @@
+package io.vacco.l4zr.rqlite;
+
+import io.vacco.l4zr.json.JsonTape;
+import java.util.Objects;
+
+/** A cluster member as reported by <code>/nodes</code>. Immutable. */
+public final class L4Node {
+
+  public final String  id;
+  public final String  apiAddr;
+  public final String  raftAddr;
+  public final boolean voter;
+  public final boolean reachable;
+  public final boolean leader;
+  public final double  latencyMs;
+  public final String  error;
+
+  public L4Node(String id, String apiAddr, String raftAddr, boolean voter,
+                boolean reachable, boolean leader, double latencyMs, String error) {
+    this.id = Objects.requireNonNull(id);
+    this.apiAddr = apiAddr;
+    this.raftAddr = raftAddr;
+    this.voter = voter;
+    this.reachable = reachable;
+    this.leader = leader;
+    this.latencyMs = latencyMs;
+    this.error = error;
+  }
+
+  public static L4Node of(String id, JsonTape.Node obj) {
+    var time = obj.get("time");
+    return new L4Node(
+      obj.getString("id", id),
+      obj.getString("api_addr", null),
+      obj.getString("addr", null),
+      obj.getBoolean("voter", true),
+      obj.getBoolean("reachable", false),
+      obj.getBoolean("leader", false),
+      time != null && time.isNumber() ? time.asDouble() * 1000 : -1,
+      obj.getString("error", null)
+    );
+  }
+
+  public L4Node withLeader(boolean leader) {
+    return leader == this.leader
+      ? this
+      : new L4Node(id, apiAddr, raftAddr, voter, reachable, leader, latencyMs, error);
+  }
+
+  /** @return true if both describe the same member in the same role and state, ignoring latency. */
+  public boolean sameAs(L4Node n) {
+    return n != null && id.equals(n.id)
+      && Objects.equals(apiAddr, n.apiAddr) && Objects.equals(raftAddr, n.raftAddr)
+      && voter == n.voter && reachable == n.reachable && leader == n.leader;
+  }
+
+  @Override public String toString() {
+    return String.format(
+      "[%s, api: %s, voter: %s, reachable: %s, leader: %s, latency: %.3fms]",
+      id, apiAddr, voter, reachable, leader, latencyMs
+    );
+  }
+
+}
@@ -1,6 +1,8 @@
 package io.vacco.l4zr.rqlite;
 
-import java.util.Properties;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import static java.lang.String.format;
 
@@ -11,7 +13,15 @@ public class L4Options {
     kBaseUrl = "baseUrl", kTimeoutSec = "timeoutSec",
     kQueue = "queue", kWait = "wait", kLevel = "level", kLinearizableTimeoutSec = "linearizableTimeoutSec",
     kFreshnessSec = "freshnessSec", kFreshnessStrict = "freshnessStrict",
-    kUser = "user", kPassword = "password";
+    kUser = "user", kPassword = "password", kSqlCacheSize = "sqlCacheSize",
+    kReadYourWrites = "readYourWrites", kResultCacheSize = "resultCacheSize",
+    kSingleFlight = "singleFlight", kTopologyPollMs = "topologyPollMs",
+    kRetryMaxAttempts = "retryMaxAttempts", kRetryBaseMs = "retryBaseMs", kRetryMaxMs = "retryMaxMs",
+    kRetryDeadlineMs = "retryDeadlineMs", kHedgePercentile = "hedgePercentile", kHedgeMinDelayMs = "hedgeMinDelayMs",
+    kMaxConcurrency = "maxConcurrency", kMaxQueue = "maxQueue", kMaxQueueMs = "maxQueueMs",
+    kAdaptiveConcurrency = "adaptiveConcurrency", kLatencyTargetMs = "latencyTargetMs",
+    kStringDictionarySize = "stringDictionarySize",
+    kLobLocatorLength = "lobLocatorLength", kLazyLobColumns = "lazyLobColumns";
 
   public static String  baseUrl, user, password, cacert;
 
@@ -26,23 +36,131 @@ public class L4Options {
   public static long    freshnessSec = 5;
   public static boolean freshnessStrict = false;
 
+  public static int     sqlCacheSize = 512;
+  public static boolean readYourWrites = true;
+  public static int     resultCacheSize = 0;
+  public static boolean singleFlight = true;
+  public static long    topologyPollMs = 0;
+
+  public static int     retryMaxAttempts = 4;
+  public static long    retryBaseMs = 50;
+  public static long    retryMaxMs = 2000;
+  public static long    retryDeadlineMs = 10000;
+
+  public static double  hedgePercentile = 0;
+  public static long    hedgeMinDelayMs = 5;
+
+  public static int     maxConcurrency = 0;
+  public static int     maxQueue = 128;
+  public static long    maxQueueMs = 1000;
+  public static boolean adaptiveConcurrency = false;
+  public static long    latencyTargetMs = 500;
+
+  public static int     stringDictionarySize = 1024;
+
+  public static long        lobLocatorLength = 0;
+  public static Set<String> lazyLobColumns = Set.of();
+
+  private static final class ParamKey {
+    final boolean transaction, write, readYourWrites, queue, wait, freshnessStrict;
+    final L4Level level;
+    final long    timeoutSec, linearizableTimeoutSec, freshnessSec;
+
+    ParamKey(boolean transaction, boolean write, L4Level level, long freshnessSec, boolean freshnessStrict,
+             long timeoutSec) {
+      this.transaction = transaction;
+      this.write = write;
+      this.level = level;
+      this.freshnessSec = freshnessSec;
+      this.freshnessStrict = freshnessStrict;
+      this.readYourWrites = L4Options.readYourWrites;
+      this.queue = L4Options.queue;
+      this.wait = L4Options.wait;
+      this.timeoutSec = timeoutSec;
+      this.linearizableTimeoutSec = L4Options.linearizableTimeoutSec;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (!(o instanceof ParamKey)) {
+        return false;
+      }
+      var k = (ParamKey) o;
+      return transaction == k.transaction && write == k.write && readYourWrites == k.readYourWrites
+        && queue == k.queue && wait == k.wait && freshnessStrict == k.freshnessStrict && level == k.level
+        && timeoutSec == k.timeoutSec && linearizableTimeoutSec == k.linearizableTimeoutSec
+        && freshnessSec == k.freshnessSec;
+    }
+
+    @Override public int hashCode() {
+      return Objects.hash(
+        transaction, write, readYourWrites, queue, wait, freshnessStrict,
+        level, timeoutSec, linearizableTimeoutSec, freshnessSec
+      );
+    }
+  }
+
+  private static final int kMaxParamCacheSize = 256;
+  private static final Map<ParamKey, String> paramCache = new ConcurrentHashMap<>();
+
   private static String kv(String key, Object value) {
     return String.format("%s=%s", key, value.toString());
   }
 
   public static String queryParams(boolean transaction) {
+    return queryParams(transaction, false, level);
+  }
+
+  public static String queryParams(boolean transaction, boolean write, L4Level level) {
+    return queryParams(transaction, write, level, freshnessSec, freshnessStrict);
+  }
+
+  public static String queryParams(boolean transaction, boolean write, L4Level level, L4Consistency c) {
+    return queryParams(transaction, write, level, c, timeoutSec);
+  }
+
+  public static String queryParams(boolean transaction, boolean write, L4Level level, L4Consistency c, long timeoutSec) {
+    if (c == null) {
+      return queryParams(transaction, write, level, freshnessSec, freshnessStrict, timeoutSec);
+    }
+    return queryParams(
+      transaction, write, level,
+      c.freshnessSecOr(freshnessSec), c.freshnessStrictOr(freshnessStrict), timeoutSec
+    );
+  }
+
+  public static String queryParams(boolean transaction, boolean write, L4Level level,
+                                   long freshnessSec, boolean freshnessStrict) {
+    return queryParams(transaction, write, level, freshnessSec, freshnessStrict, timeoutSec);
+  }
+
+  public static String queryParams(boolean transaction, boolean write, L4Level level,
+                                   long freshnessSec, boolean freshnessStrict, long timeoutSec) {
+    var key = new ParamKey(transaction, write, level, freshnessSec, freshnessStrict, timeoutSec);
+    var params = paramCache.get(key);
+    if (params == null) {
+      if (paramCache.size() >= kMaxParamCacheSize) {
+        paramCache.clear();
+      }
+      params = renderParams(key);
+      paramCache.put(key, params);
+    }
+    return params;
+  }
+
+  private static String renderParams(ParamKey k) {
     var pairs = new String[] {
-      transaction ? kv("transaction", true) : "",
+      k.transaction ? kv("transaction", true) : "",
+      k.write && k.readYourWrites ? kv("raft_index", true) : "",
       kv("timings", true),
-      kv("timeout", format("%ds", timeoutSec)),
-      queue ? kv("queue", queue) : "",
-      kv("wait", wait),
-      kv("level", level),
-      level == L4Level.linearizable
-        ? kv("linearizable_timeout", format("%ds", linearizableTimeoutSec))
+      k.timeoutSec > 0 ? kv("timeout", format("%ds", k.timeoutSec)) : "",
+      k.queue ? kv("queue", k.queue) : "",
+      kv("wait", k.wait),
+      kv("level", k.level),
+      k.level == L4Level.linearizable
+        ? kv("linearizable_timeout", format("%ds", k.linearizableTimeoutSec))
         : "",
-      kv("freshness", format("%ds", freshnessSec)),
-      kv("freshness_strict", freshnessStrict)
+      kv("freshness", format("%ds", k.freshnessSec)),
+      kv("freshness_strict", k.freshnessStrict)
     };
     var params = String.join("&", pairs);
     return String.format("?%s", params);
@@ -84,6 +202,65 @@ public class L4Options {
       if (p.containsKey(kPassword)) {
         L4Options.password = get(p, password);
       }
+      if (p.containsKey(kSqlCacheSize)) {
+        L4Options.sqlCacheSize = Integer.parseInt(get(p, kSqlCacheSize));
+      }
+      if (p.containsKey(kReadYourWrites)) {
+        L4Options.readYourWrites = Boolean.parseBoolean(get(p, kReadYourWrites));
+      }
+      if (p.containsKey(kResultCacheSize)) {
+        L4Options.resultCacheSize = Integer.parseInt(get(p, kResultCacheSize));
+      }
+      if (p.containsKey(kSingleFlight)) {
+        L4Options.singleFlight = Boolean.parseBoolean(get(p, kSingleFlight));
+      }
+      if (p.containsKey(kTopologyPollMs)) {
+        L4Options.topologyPollMs = Long.parseLong(get(p, kTopologyPollMs));
+      }
+      if (p.containsKey(kRetryMaxAttempts)) {
+        L4Options.retryMaxAttempts = Integer.parseInt(get(p, kRetryMaxAttempts));
+      }
+      if (p.containsKey(kRetryBaseMs)) {
+        L4Options.retryBaseMs = Long.parseLong(get(p, kRetryBaseMs));
+      }
+      if (p.containsKey(kRetryMaxMs)) {
+        L4Options.retryMaxMs = Long.parseLong(get(p, kRetryMaxMs));
+      }
+      if (p.containsKey(kRetryDeadlineMs)) {
+        L4Options.retryDeadlineMs = Long.parseLong(get(p, kRetryDeadlineMs));
+      }
+      if (p.containsKey(kHedgePercentile)) {
+        L4Options.hedgePercentile = Double.parseDouble(get(p, kHedgePercentile));
+      }
+      if (p.containsKey(kHedgeMinDelayMs)) {
+        L4Options.hedgeMinDelayMs = Long.parseLong(get(p, kHedgeMinDelayMs));
+      }
+      if (p.containsKey(kMaxConcurrency)) {
+        L4Options.maxConcurrency = Integer.parseInt(get(p, kMaxConcurrency));
+      }
+      if (p.containsKey(kMaxQueue)) {
+        L4Options.maxQueue = Integer.parseInt(get(p, kMaxQueue));
+      }
+      if (p.containsKey(kMaxQueueMs)) {
+        L4Options.maxQueueMs = Long.parseLong(get(p, kMaxQueueMs));
+      }
+      if (p.containsKey(kAdaptiveConcurrency)) {
+        L4Options.adaptiveConcurrency = Boolean.parseBoolean(get(p, kAdaptiveConcurrency));
+      }
+      if (p.containsKey(kLatencyTargetMs)) {
+        L4Options.latencyTargetMs = Long.parseLong(get(p, kLatencyTargetMs));
+      }
+      if (p.containsKey(kStringDictionarySize)) {
+        L4Options.stringDictionarySize = Integer.parseInt(get(p, kStringDictionarySize));
+      }
+      if (p.containsKey(kLobLocatorLength)) {
+        L4Options.lobLocatorLength = Long.parseLong(get(p, kLobLocatorLength));
+      }
+      if (p.containsKey(kLazyLobColumns)) {
+        L4Options.lazyLobColumns = Arrays.stream(get(p, kLazyLobColumns).split(","))
+          .map(String::trim).filter(c -> !c.isEmpty()).map(String::toLowerCase)
+          .collect(Collectors.toUnmodifiableSet());
+      }
       if (p.containsKey(kCaCert)) {
         L4Options.cacert = get(p, kCaCert);
       }
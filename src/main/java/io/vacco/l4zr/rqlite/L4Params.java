@@ -0,0 +1,157 @@
+package io.vacco.l4zr.rqlite;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Positional parameter buffer. Each slot carries a type tag; primitive
+ * values live unboxed in a parallel <code>long[]</code> (floating point
+ * values as raw bits), and only reference values touch the lazily
+ * allocated <code>Object[]</code>.
+ *
+ * It is also the <code>List&lt;Object&gt;</code> view of a statement's positional
+ * parameters. Unlike a plain list, {@link #set(int, Object)} grows the buffer,
+ * filling any gap with nulls.
+ */
+public class L4Params extends AbstractList<Object> implements RandomAccess {
+
+  public static final byte
+    tUnset = 0, tNull = 1, tBool = 2, tByte = 3, tShort = 4,
+    tInt = 5, tLong = 6, tFloat = 7, tDouble = 8, tRef = 9;
+
+  byte[]   tags = new byte[8];
+  long[]   bits = new long[8];
+  Object[] refs;
+  int      size;
+
+  private void ensure(int idx) {
+    if (idx < 0) {
+      throw new IllegalArgumentException("Parameter index must be non-negative: " + idx);
+    }
+    if (idx >= tags.length) {
+      var cap = Math.max(tags.length << 1, idx + 1);
+      tags = Arrays.copyOf(tags, cap);
+      bits = Arrays.copyOf(bits, cap);
+      if (refs != null) {
+        refs = Arrays.copyOf(refs, cap);
+      }
+    }
+    if (idx >= size) {
+      Arrays.fill(tags, size, idx, tNull);
+      size = idx + 1;
+    }
+  }
+
+  private L4Params put(int idx, byte tag, long value) {
+    ensure(idx);
+    tags[idx] = tag;
+    bits[idx] = value;
+    if (refs != null) {
+      refs[idx] = null;
+    }
+    return this;
+  }
+
+  public L4Params setBool(int idx, boolean v)  { return put(idx, tBool, v ? 1 : 0); }
+  public L4Params setByte(int idx, byte v)     { return put(idx, tByte, v); }
+  public L4Params setShort(int idx, short v)   { return put(idx, tShort, v); }
+  public L4Params setInt(int idx, int v)       { return put(idx, tInt, v); }
+  public L4Params setLong(int idx, long v)     { return put(idx, tLong, v); }
+  public L4Params setFloat(int idx, float v)   { return put(idx, tFloat, Float.floatToRawIntBits(v)); }
+  public L4Params setDouble(int idx, double v) { return put(idx, tDouble, Double.doubleToRawLongBits(v)); }
+
+  /**
+   * LOB values are read here, see {@link L4Json#param(Object)}.
+   * @return the previous value at <code>idx</code>, or null if the buffer had to grow.
+   */
+  @Override public Object set(int idx, Object v) {
+    var prev = idx >= 0 && idx < size ? get(idx) : null;
+    if (v == null) {
+      put(idx, tNull, 0);
+      return prev;
+    }
+    var ref = L4Json.param(v);
+    ensure(idx);
+    if (refs == null) {
+      refs = new Object[tags.length];
+    }
+    tags[idx] = tRef;
+    refs[idx] = ref;
+    return prev;
+  }
+
+  @Override public boolean add(Object v) {
+    set(size, v);
+    modCount++;
+    return true;
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  @Override public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override public void clear() {
+    if (refs != null) {
+      Arrays.fill(refs, 0, size, null);
+    }
+    size = 0;
+    modCount++;
+  }
+
+  public L4Params copyFrom(L4Params src) {
+    tags = src.tags.clone();
+    bits = src.bits.clone();
+    refs = src.refs != null ? src.refs.clone() : null;
+    size = src.size;
+    return this;
+  }
+
+  static Object box(byte tag, long bits, Object ref) {
+    switch (tag) {
+      case tBool:   return bits != 0;
+      case tByte:   return (byte) bits;
+      case tShort:  return (short) bits;
+      case tInt:    return (int) bits;
+      case tLong:   return bits;
+      case tFloat:  return Float.intBitsToFloat((int) bits);
+      case tDouble: return Double.longBitsToDouble(bits);
+      case tRef:    return ref;
+      default:      return null;
+    }
+  }
+
+  static void write(L4Body out, byte tag, long bits, Object ref) {
+    switch (tag) {
+      case tBool:   out.ascii(bits != 0 ? "true" : "false"); break;
+      case tByte:
+      case tShort:
+      case tInt:
+      case tLong:   out.num(bits); break;
+      case tFloat:  out.num(Float.intBitsToFloat((int) bits)); break;
+      case tDouble: out.num(Double.longBitsToDouble(bits)); break;
+      case tRef:    L4Json.write(out, ref); break;
+      default:      out.ascii("null");
+    }
+  }
+
+  /** @return the value at <code>idx</code>, boxed. Meant for metadata and diagnostics, not the request path. */
+  @Override public Object get(int idx) {
+    if (idx < 0 || idx >= size) {
+      throw new IndexOutOfBoundsException(idx);
+    }
+    return box(tags[idx], bits[idx], refs != null ? refs[idx] : null);
+  }
+
+  public void writeTo(L4Body out) {
+    for (int i = 0; i < size; i++) {
+      out.raw(',');
+      write(out, tags[i], bits[i], refs != null ? refs[i] : null);
+    }
+  }
+
+}
@@ -9,6 +9,7 @@ public class L4Response {
 
   public final List<L4Result> results;
   public final Float time;
+  public final Long raftIndex;
   public final int statusCode;
 
   public L4Response(int statusCode, JsonObject obj) {
@@ -24,6 +25,31 @@ public class L4Response {
       this.results = new ArrayList<>();
     }
     this.time = obj.get("time") != null ? obj.getFloat("time", -1) : null;
+    this.raftIndex = obj.get("raft_index") != null ? obj.getLong("raft_index", -1) : null;
+  }
+
+  private L4Response(L4Response src) {
+    this.statusCode = src.statusCode;
+    this.results = new ArrayList<>(src.results.size());
+    for (var res : src.results) {
+      this.results.add(new L4Result(res));
+    }
+    this.time = src.time;
+    this.raftIndex = src.raftIndex;
+  }
+
+  /** @return a copy whose results can be modified without affecting this response. */
+  public L4Response copy() {
+    return new L4Response(this);
+  }
+
+  public boolean hasErrors() {
+    for (var res : results) {
+      if (res.error != null) {
+        return true;
+      }
+    }
+    return false;
   }
 
   public void print(PrintStream out) {
@@ -20,14 +20,32 @@ public class L4Result {
     if (json.get("error") != null) {
       this.error = json.getString("error", "Unknown error");
     } else {
-      this.columns = json.get("columns") != null ? toStringList(json.get("columns").asArray()) : null;
-      this.types = json.get("types") != null ? toStringList(json.get("types").asArray()) : null;
-      this.values = json.get("values") != null ? toValuesList(json.get("values").asArray()) : new ArrayList<>();
+      this.columns = json.get("columns") != null ? toNameList(json.get("columns").asArray()) : null;
+      this.types = json.get("types") != null ? toNameList(json.get("types").asArray()) : null;
+      this.values = json.get("values") != null ? toValuesList(json.get("values").asArray(), types) : new ArrayList<>();
       this.lastInsertId = json.get("last_insert_id") != null ? json.getLong("last_insert_id", -1) : null;
       this.rowsAffected = json.get("rows_affected") != null ? json.getInt("rows_affected", -1) : null;
     }
   }
 
+  public L4Result(L4Result src) {
+    this.error = src.error;
+    this.columns = src.columns != null ? new ArrayList<>(src.columns) : null;
+    this.types = src.types != null ? new ArrayList<>(src.types) : null;
+    if (src.values != null) {
+      this.values = new ArrayList<>(src.values.size());
+      for (var row : src.values) {
+        if (row instanceof L4Row) {
+          this.values.add(new L4Row((L4Row) row));
+        } else {
+          this.values.add(row != null ? new ArrayList<>(row) : null);
+        }
+      }
+    }
+    this.lastInsertId = src.lastInsertId;
+    this.rowsAffected = src.rowsAffected;
+  }
+
   public int indexOf(String column) {
     for (int i = 0; i < columns.size(); i++) {
       var name = columns.get(i);
@@ -0,0 +1,68 @@
+package io.vacco.l4zr.rqlite;
+
+import java.io.IOException;
+import java.net.*;
+import java.net.http.HttpConnectTimeoutException;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether, and after how long, a failed HTTP request is sent again.
+ * The client enforces {@link L4Options#retryDeadlineMs} on top of whatever
+ * the policy answers.
+ */
+@FunctionalInterface
+public interface L4Retry {
+
+  /**
+   * @param attempt number of the attempt that just failed, starting at 1.
+   * @param error   the failure, as thrown by the HTTP layer.
+   * @param safe    true for reads, and for writes marked idempotent.
+   * @return milliseconds to wait before the next attempt, or a negative value to give up.
+   */
+  long delayMs(int attempt, Exception error, boolean safe);
+
+  L4Retry never = (attempt, error, safe) -> -1;
+
+  /** @return true if the request provably never reached the server, i.e. no connection was made. */
+  static boolean notSent(Throwable error) {
+    for (var e = error; e != null; e = e.getCause()) {
+      if (e instanceof ConnectException || e instanceof HttpConnectTimeoutException
+        || e instanceof UnknownHostException || e instanceof UnresolvedAddressException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** @return true for I/O failures and for HTTP statuses rqlite returns while a leader is being elected. */
+  static boolean isTransient(Throwable error) {
+    for (var e = error; e != null; e = e.getCause()) {
+      if (e instanceof L4Err.StatusError) {
+        var code = ((L4Err.StatusError) e).statusCode;
+        return code == 429 || code == 502 || code == 503 || code == 504;
+      }
+      if (e instanceof IOException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Exponential backoff with full jitter, bounded by {@link L4Options#retryMaxAttempts},
+   * {@link L4Options#retryBaseMs} and {@link L4Options#retryMaxMs}. Unsafe requests are
+   * only retried when they never left this process.
+   */
+  L4Retry backoff = (attempt, error, safe) -> {
+    if (attempt >= L4Options.retryMaxAttempts) {
+      return -1;
+    }
+    if (!notSent(error) && !(safe && isTransient(error))) {
+      return -1;
+    }
+    var cap = Math.min(L4Options.retryMaxMs, L4Options.retryBaseMs << Math.min(attempt - 1, 30));
+    return ThreadLocalRandom.current().nextLong(Math.max(cap, 1));
+  };
+
+}
@@ -0,0 +1,152 @@
+package io.vacco.l4zr.rqlite;
+
+import java.util.*;
+
+/**
+ * One row of {@link L4Result#values}. Cells the response held as JSON integers
+ * are kept as primitive longs, and only turned into text when read as strings,
+ * so numeric readers like <code>ResultSet.getLong()</code> never go through a
+ * String. Likewise, BLOB cells are kept decoded and only turned back into base64
+ * when read as strings. Text is rendered once per cell and kept.
+ */
+public class L4Row extends AbstractList<String> implements RandomAccess {
+
+  private String[]  text;
+  private long[]    longs;
+  private boolean[] isLong;
+  private byte[][]  bytes;
+  private int       size;
+
+  public L4Row(int capacity) {
+    this.text = new String[Math.max(capacity, 1)];
+  }
+
+  public L4Row(L4Row src) {
+    this.text = Arrays.copyOf(src.text, Math.max(src.size, 1));
+    this.longs = src.longs != null ? Arrays.copyOf(src.longs, this.text.length) : null;
+    this.isLong = src.isLong != null ? Arrays.copyOf(src.isLong, this.text.length) : null;
+    this.bytes = src.bytes != null ? Arrays.copyOf(src.bytes, this.text.length) : null;
+    this.size = src.size;
+  }
+
+  private void grow() {
+    if (size == text.length) {
+      var cap = text.length * 2;
+      text = Arrays.copyOf(text, cap);
+      if (longs != null) {
+        longs = Arrays.copyOf(longs, cap);
+        isLong = Arrays.copyOf(isLong, cap);
+      }
+      if (bytes != null) {
+        bytes = Arrays.copyOf(bytes, cap);
+      }
+    }
+  }
+
+  @Override public boolean add(String value) {
+    grow();
+    text[size++] = value;
+    modCount++;
+    return true;
+  }
+
+  public L4Row addLong(long value) {
+    grow();
+    if (longs == null) {
+      longs = new long[text.length];
+      isLong = new boolean[text.length];
+    }
+    longs[size] = value;
+    isLong[size] = true;
+    size++;
+    modCount++;
+    return this;
+  }
+
+  /** Adds a decoded BLOB cell, whose text is its base64 encoding. */
+  public L4Row addBytes(byte[] value) {
+    grow();
+    size++;
+    setBytes(size - 1, value);
+    modCount++;
+    return this;
+  }
+
+  /**
+   * @return the decoded contents of BLOB cell <code>i</code>, or null if it was never
+   *         decoded. The array is shared by every reader and must not be modified.
+   */
+  public byte[] getBytes(int i) {
+    Objects.checkIndex(i, size);
+    return bytes != null ? bytes[i] : null;
+  }
+
+  /** Keeps the decoded contents of cell <code>i</code>, so later reads don't decode it again. */
+  public void setBytes(int i, byte[] value) {
+    Objects.checkIndex(i, size);
+    if (bytes == null) {
+      bytes = new byte[text.length][];
+    }
+    bytes[i] = value;
+  }
+
+  /** @return true if cell <code>i</code> holds an integer, readable with {@link #getLong(int)}. */
+  public boolean isLong(int i) {
+    Objects.checkIndex(i, size);
+    return isLong != null && isLong[i];
+  }
+
+  public long getLong(int i) {
+    if (!isLong(i)) {
+      throw new IllegalStateException(String.format("Cell [%d] is not an integer", i));
+    }
+    return longs[i];
+  }
+
+  @Override public String get(int i) {
+    Objects.checkIndex(i, size);
+    var s = text[i];
+    if (s == null && isLong != null && isLong[i]) {
+      s = Long.toString(longs[i]);
+      text[i] = s;
+    } else if (s == null && bytes != null && bytes[i] != null) {
+      s = Base64.getEncoder().encodeToString(bytes[i]);
+      text[i] = s;
+    }
+    return s;
+  }
+
+  @Override public String set(int i, String value) {
+    var prev = get(i);
+    text[i] = value;
+    if (isLong != null) {
+      isLong[i] = false;
+    }
+    if (bytes != null) {
+      bytes[i] = null;
+    }
+    return prev;
+  }
+
+  @Override protected void removeRange(int from, int to) {
+    var n = size - to;
+    System.arraycopy(text, to, text, from, n);
+    Arrays.fill(text, from + n, size, null);
+    if (longs != null) {
+      System.arraycopy(longs, to, longs, from, n);
+      System.arraycopy(isLong, to, isLong, from, n);
+      Arrays.fill(isLong, from + n, size, false);
+    }
+    if (bytes != null) {
+      System.arraycopy(bytes, to, bytes, from, n);
+      Arrays.fill(bytes, from + n, size, null);
+    }
+    size -= to - from;
+    modCount++;
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+}
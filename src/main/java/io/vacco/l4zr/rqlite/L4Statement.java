@@ -6,7 +6,7 @@ import java.util.*;
 public class L4Statement {
 
   public String sql;
-  public final List<Object> positionalParams = new ArrayList<>();
+  public final L4Params positionalParams = new L4Params();
   public final Map<String, Object> namedParams = new LinkedHashMap<>();
 
   public L4Statement sql(String sql) {
@@ -14,6 +14,14 @@ public class L4Statement {
     return this;
   }
 
+  /** @return a copy of this statement that runs <code>sql</code> with the same parameters. */
+  public L4Statement withSql(String sql) {
+    var out = new L4Statement().sql(sql);
+    out.positionalParams.copyFrom(positionalParams);
+    out.namedParams.putAll(namedParams);
+    return out;
+  }
+
   private void badParams() {
     throw new IllegalStateException("Cannot mix positional and named parameters in the same statement");
   }
@@ -32,16 +40,52 @@ public class L4Statement {
 
   public L4Statement withPositionalParam(int paramIndex, Object param) {
     checkNamedParams();
-    if (paramIndex < 0) {
-      throw new IllegalArgumentException("Parameter index must be non-negative: " + paramIndex);
-    }
-    while (positionalParams.size() <= paramIndex) {
-      positionalParams.add(null);
-    }
     positionalParams.set(paramIndex, param);
     return this;
   }
 
+  public L4Statement withPositionalParam(int paramIndex, boolean param) {
+    checkNamedParams();
+    positionalParams.setBool(paramIndex, param);
+    return this;
+  }
+
+  public L4Statement withPositionalParam(int paramIndex, byte param) {
+    checkNamedParams();
+    positionalParams.setByte(paramIndex, param);
+    return this;
+  }
+
+  public L4Statement withPositionalParam(int paramIndex, short param) {
+    checkNamedParams();
+    positionalParams.setShort(paramIndex, param);
+    return this;
+  }
+
+  public L4Statement withPositionalParam(int paramIndex, int param) {
+    checkNamedParams();
+    positionalParams.setInt(paramIndex, param);
+    return this;
+  }
+
+  public L4Statement withPositionalParam(int paramIndex, long param) {
+    checkNamedParams();
+    positionalParams.setLong(paramIndex, param);
+    return this;
+  }
+
+  public L4Statement withPositionalParam(int paramIndex, float param) {
+    checkNamedParams();
+    positionalParams.setFloat(paramIndex, param);
+    return this;
+  }
+
+  public L4Statement withPositionalParam(int paramIndex, double param) {
+    checkNamedParams();
+    positionalParams.setDouble(paramIndex, param);
+    return this;
+  }
+
   public L4Statement withPositionalParam(Object param) {
     checkNamedParams();
     positionalParams.add(param);
@@ -51,27 +95,35 @@ public class L4Statement {
   public L4Statement withPositionalParams(Object... params) {
     checkNamedParams();
     this.positionalParams.clear();
-    this.positionalParams.addAll(Arrays.asList(params));
+    for (var param : params) {
+      this.positionalParams.add(param);
+    }
     return this;
   }
 
   public L4Statement withNamedParam(String name, Object value) {
     checkPositionalParams();
-    this.namedParams.put(name, value);
+    this.namedParams.put(name, L4Json.param(value));
     return this;
   }
 
   public L4Statement withNamedParams(Map<String, Object> params) {
     checkPositionalParams();
     this.namedParams.clear();
-    this.namedParams.putAll(params);
+    for (var e : params.entrySet()) {
+      this.namedParams.put(e.getKey(), L4Json.param(e.getValue()));
+    }
     return this;
   }
 
-  public JsonArray build() {
-    if (sql == null || sql.trim().isEmpty()) {
+  private void checkSql() {
+    if (sql == null || sql.isBlank()) {
       throw new IllegalStateException("SQL statement cannot be null or empty");
     }
+  }
+
+  public JsonArray build() {
+    checkSql();
     var out = new JsonArray();
     out.add(sql);
     if (!namedParams.isEmpty()) {
@@ -80,9 +132,9 @@ public class L4Statement {
         paramsObject.add(entry.getKey(), L4Json.toJsonValue(entry.getValue()));
       }
       out.add(paramsObject);
-    } else if (!positionalParams.isEmpty()) {
-      for (var param : positionalParams) {
-        out.add(L4Json.toJsonValue(param));
+    } else {
+      for (int i = 0; i < positionalParams.size(); i++) {
+        out.add(L4Json.toJsonValue(positionalParams.get(i)));
       }
     }
     return out;
@@ -96,6 +148,42 @@ public class L4Statement {
     return smtList;
   }
 
+  public void writeTo(L4Body out) {
+    checkSql();
+    out.raw('[').str(sql);
+    if (!namedParams.isEmpty()) {
+      out.raw(',').raw('{');
+      var first = true;
+      for (var entry : namedParams.entrySet()) {
+        if (!first) {
+          out.raw(',');
+        }
+        out.str(entry.getKey()).raw(':').value(entry.getValue());
+        first = false;
+      }
+      out.raw('}');
+    } else {
+      positionalParams.writeTo(out);
+    }
+    out.raw(']');
+  }
+
+  public static L4Body toBody(L4Statement... statements) {
+    var out = L4Body.local().raw('[');
+    try {
+      for (int i = 0; i < statements.length; i++) {
+        if (i > 0) {
+          out.raw(',');
+        }
+        statements[i].writeTo(out);
+      }
+      return out.raw(']');
+    } catch (RuntimeException e) {
+      out.release();
+      throw e;
+    }
+  }
+
   @Override public String toString() {
     return String.format("[%s]", sql);
   }
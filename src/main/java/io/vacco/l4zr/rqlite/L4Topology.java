@@ -0,0 +1,114 @@
+package io.vacco.l4zr.rqlite;
+
+import io.vacco.l4zr.json.JsonTape;
+import java.util.*;
+
+/**
+ * Immutable snapshot of cluster membership, built from <code>/nodes</code>
+ * and the leader reported by <code>/status</code>.
+ */
+public final class L4Topology {
+
+  public static final L4Topology empty = new L4Topology(Collections.emptyList(), 0);
+
+  public final List<L4Node> nodes;
+  public final L4Node       leader;
+  public final long         updatedAtMs;
+
+  public L4Topology(List<L4Node> nodes, long updatedAtMs) {
+    this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+    this.updatedAtMs = updatedAtMs;
+    L4Node leader = null;
+    for (var n : this.nodes) {
+      if (n.leader) {
+        leader = n;
+        break;
+      }
+    }
+    this.leader = leader;
+  }
+
+  private static List<L4Node> voting(List<L4Node> nodes, boolean voter) {
+    var out = new ArrayList<L4Node>();
+    for (var n : nodes) {
+      if (n.voter == voter) {
+        out.add(n);
+      }
+    }
+    return Collections.unmodifiableList(out);
+  }
+
+  public List<L4Node> voters() {
+    return voting(nodes, true);
+  }
+
+  public List<L4Node> nonVoters() {
+    return voting(nodes, false);
+  }
+
+  public boolean isEmpty() {
+    return nodes.isEmpty();
+  }
+
+  /**
+   * @param nodes  the <code>/nodes</code> response, either the legacy map keyed
+   *               by node id or the <code>ver=2</code> form with a <code>nodes</code> array.
+   * @param status the <code>/status</code> response, or null. Its leader wins if
+   *               <code>/nodes</code> didn't flag one.
+   */
+  public static L4Topology of(JsonTape.Node nodes, JsonTape.Node status, long updatedAtMs) {
+    var out = new ArrayList<L4Node>();
+    var arr = nodes.get("nodes");
+    if (arr != null && arr.isArray()) {
+      for (var n : arr.values()) {
+        out.add(L4Node.of(n.getString("id", ""), n));
+      }
+    } else {
+      var names = nodes.names();
+      var values = nodes.values();
+      for (int i = 0; i < names.size(); i++) {
+        if (values.get(i).isObject()) {
+          out.add(L4Node.of(names.get(i), values.get(i)));
+        }
+      }
+    }
+    var leader = status != null ? status.path("store", "leader") : null;
+    var isLeader = leader != null && leader.isObject();
+    return of(out,
+      isLeader ? leader.getString("node_id", null) : null,
+      isLeader ? leader.getString("addr", null) : null,
+      updatedAtMs);
+  }
+
+  private static L4Topology of(List<L4Node> out, String leaderId, String leaderAddr, long updatedAtMs) {
+    var anyLeader = out.stream().anyMatch(n -> n.leader);
+    if ((leaderId != null || leaderAddr != null) && !anyLeader) {
+      for (int i = 0; i < out.size(); i++) {
+        var n = out.get(i);
+        if (n.id.equals(leaderId) || n.raftAddr != null && n.raftAddr.equals(leaderAddr)) {
+          out.set(i, n.withLeader(true));
+        }
+      }
+    }
+    out.sort(Comparator.comparing(n -> n.id));
+    return new L4Topology(out, updatedAtMs);
+  }
+
+  /** @return true if both snapshots have the same members in the same roles and states. */
+  public boolean sameAs(L4Topology t) {
+    if (t == null || t.nodes.size() != nodes.size()) {
+      return false;
+    }
+    for (int i = 0; i < nodes.size(); i++) {
+      if (!nodes.get(i).sameAs(t.nodes.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override public String toString() {
+    return String.format("[leader: %s, nodes: %s]", leader != null ? leader.id : null, nodes);
+  }
+
+}
@@ -0,0 +1,129 @@
+package io.vacco.l4zr.rqlite;
+
+import io.vacco.l4zr.jdbc.L4Log;
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Polls <code>/nodes</code> and <code>/status</code> on a daemon thread every
+ * {@link L4Options#topologyPollMs}, one watcher per base URL. The latest
+ * {@link L4Topology} is published through a volatile field, so readers never
+ * block or touch the network. Listeners run on the polling thread whenever
+ * membership, roles or reachability change. A failed poll keeps the previous
+ * snapshot.
+ *
+ * Watchers are reference counted by the clients using them: each client takes a
+ * reference the first time it needs the topology and gives it back when it is
+ * closed, and the poller stops once the last reference is gone.
+ */
+public class L4Watcher implements Closeable {
+
+  private static final Map<String, L4Watcher> watchers = new ConcurrentHashMap<>();
+
+  private final L4Client client;
+  private final List<Consumer<L4Topology>> listeners = new CopyOnWriteArrayList<>();
+  private final ScheduledExecutorService exec;
+
+  private volatile L4Topology topology = L4Topology.empty;
+  private volatile String     lastError;
+  private int                 refs; // guarded by the watchers map entry
+
+  public L4Watcher(L4Client client, long pollMs) {
+    if (pollMs <= 0) {
+      throw new IllegalArgumentException("Invalid poll interval: " + pollMs);
+    }
+    this.client = Objects.requireNonNull(client);
+    this.exec = Executors.newSingleThreadScheduledExecutor(r -> {
+      var t = new Thread(r, "l4zr-topology-" + client.getBaseUrl());
+      t.setDaemon(true);
+      return t;
+    });
+    this.exec.scheduleWithFixedDelay(this::poll, 0, pollMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Takes a reference to the shared watcher for <code>client</code>'s base URL, starting
+   * it on first use. Pair with {@link #release(L4Watcher)}.
+   *
+   * @return the watcher, or null if {@link L4Options#topologyPollMs} is not set.
+   */
+  public static L4Watcher acquire(L4Client client) {
+    if (L4Options.topologyPollMs <= 0) {
+      return null;
+    }
+    return watchers.compute(client.getBaseUrl(), (k, w) -> {
+      if (w == null) {
+        w = new L4Watcher(client.copy(), L4Options.topologyPollMs);
+      }
+      w.refs++;
+      return w;
+    });
+  }
+
+  /** Gives back a reference taken with {@link #acquire(L4Client)}, stopping the watcher after the last one. */
+  public static void release(L4Watcher watcher) {
+    watchers.computeIfPresent(watcher.client.getBaseUrl(), (k, w) -> {
+      if (w != watcher || --w.refs > 0) {
+        return w;
+      }
+      w.exec.shutdownNow();
+      return null;
+    });
+  }
+
+  public boolean isClosed() {
+    return exec.isShutdown();
+  }
+
+  /** Runs one poll on the calling thread. */
+  public L4Topology poll() {
+    try {
+      var nodes = client.nodesTape(true);
+      var status = client.statusTape();
+      var next = L4Topology.of(nodes, status, System.currentTimeMillis());
+      var prev = topology;
+      topology = next;
+      lastError = null;
+      if (!next.sameAs(prev)) {
+        L4Log.l4Trace("Topology changed: {}", next);
+        for (var l : listeners) {
+          try {
+            l.accept(next);
+          } catch (Exception e) {
+            L4Log.l4Trace("Topology listener error: {}", e.getMessage());
+          }
+        }
+      }
+    } catch (Exception e) {
+      lastError = e.getMessage();
+      L4Log.l4Trace("Topology poll error: {}", lastError);
+    }
+    return topology;
+  }
+
+  public L4Topology topology() {
+    return topology;
+  }
+
+  public String getLastError() {
+    return lastError;
+  }
+
+  public L4Watcher addListener(Consumer<L4Topology> listener) {
+    listeners.add(Objects.requireNonNull(listener));
+    return this;
+  }
+
+  public L4Watcher removeListener(Consumer<L4Topology> listener) {
+    listeners.remove(listener);
+    return this;
+  }
+
+  @Override public void close() {
+    exec.shutdownNow();
+    watchers.remove(client.getBaseUrl(), this);
+  }
+
+}
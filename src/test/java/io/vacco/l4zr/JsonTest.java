@@ -1,13 +1,19 @@
 package io.vacco.l4zr;
 
-import io.vacco.l4zr.json.Json;
+import io.vacco.l4zr.jdbc.L4Rs;
+import io.vacco.l4zr.json.*;
+import io.vacco.l4zr.rqlite.*;
 import j8spec.annotation.DefinedOrder;
 import j8spec.junit.J8SpecRunner;
 import org.junit.runner.RunWith;
 import java.io.InputStreamReader;
-import java.util.Objects;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 import static j8spec.J8Spec.*;
+import static org.junit.Assert.*;
 
 @DefinedOrder
 @RunWith(J8SpecRunner.class)
@@ -19,5 +25,253 @@ public class JsonTest {
         System.out.println(jv.toString());
       }
     });
+
+    it("Parses UTF-8 bytes without decoding them first", () -> {
+      try (var is = JsonTest.class.getResourceAsStream("/example.json")) {
+        var raw = Objects.requireNonNull(is).readAllBytes();
+        assertEquals(Json.parse(new String(raw, StandardCharsets.UTF_8)), Json.parse(raw));
+      }
+      var text = "{\"a\":\"plain\",\"b\":\"caf\u00e9 \u65e5\u672c\",\"c\":\"x\\\"\u00e9\\u00e9\\n\",\"d\":[1,-2.5e3,true,null]}";
+      var bytes = text.getBytes(StandardCharsets.UTF_8);
+      var padded = new byte[bytes.length + 4];
+      System.arraycopy(bytes, 0, padded, 2, bytes.length);
+      var obj = Json.parse(ByteBuffer.wrap(padded, 2, bytes.length)).asObject();
+      assertEquals(Json.parse(text), obj);
+      assertEquals("plain", obj.getString("a", null));
+      assertEquals("caf\u00e9 \u65e5\u672c", obj.getString("b", null));
+      assertEquals("x\"\u00e9\u00e9\n", obj.getString("c", null));
+      try {
+        Json.parse("{\"a\":\"open".getBytes(StandardCharsets.UTF_8));
+        fail("Unterminated string parsed");
+      } catch (ParseException e) {
+        assertEquals(10, e.getLocation().offset);
+      }
+    });
+
+    it("Reports numbers as primitives without building their text", () -> {
+      var longs = new long[1];
+      var doubles = new double[1];
+      var texts = new ArrayList<String>();
+      var handler = new JsonHandler<Object, Object>() {
+        @Override public void endLong(long value) { longs[0] += value; }
+        @Override public void endDouble(double value) { doubles[0] += value; }
+        @Override public void endNumber(String string) { texts.add(string); }
+      };
+      new JsonParser(handler).parse("[1, -20, 300, 0.5, -1.25e2, 3e-3, -0, 1234567890123456789, 1.2345678901234567, 1e400]".getBytes());
+      assertEquals(281, longs[0]);
+      assertEquals(0.5 - 125 + 0.003, doubles[0], 0);
+      assertEquals(List.of("-0", "1234567890123456789", "1.2345678901234567", "1e400"), texts);
+
+      var text = "[0,-7,123456789012345678,2.50,-1E+2,9223372036854775807]";
+      var parsed = Json.parse(text.getBytes()).asArray();
+      assertEquals(text, parsed.toString());
+      assertEquals(parsed, Json.parse(new StringReader(text)));
+      assertTrue(parsed.get(2).isLong());
+      assertFalse(parsed.get(3).isLong());
+      assertEquals(123456789012345678L, parsed.get(2).asLong());
+      assertEquals(-7, parsed.get(1).asInt());
+
+      var res = new L4Result(Json.parse(
+        "{\"columns\":[\"id\",\"n\"],\"types\":[\"integer\",\"text\"],\"values\":[[42,7]]}"
+      ).asObject());
+      var row = (L4Row) res.values.get(0);
+      assertTrue(row.isLong(0));
+      var rs = new L4Rs(res, null);
+      assertTrue(rs.next());
+      assertEquals(42L, rs.getLong(1));
+      assertEquals(42, rs.getInt(1));
+      assertEquals("42", rs.getString(1));
+      assertEquals("7", rs.getString(2));
+      row.set(0, "43");
+      assertFalse(row.isLong(0));
+      assertEquals(43L, rs.getLong(1));
+    });
+
+    it("Shares repeated strings through a dictionary", () -> {
+      var text = "[[\"active\",\"US\"],[\"active\",\"DE\"],[\"closed\",\"US\"],[\"caf\u00e9\",\"caf\u00e9\"]]";
+      var bytes = text.getBytes(StandardCharsets.UTF_8);
+      var rows = Json.parse(bytes, 16).asArray();
+      assertEquals(Json.parse(text), rows);
+      assertSame(rows.get(0).asArray().get(0).asString(), rows.get(1).asArray().get(0).asString());
+      assertSame(rows.get(0).asArray().get(1).asString(), rows.get(2).asArray().get(1).asString());
+      assertNotSame(rows.get(3).asArray().get(0).asString(), rows.get(3).asArray().get(1).asString());
+
+      var small = Json.parse(bytes, 1).asArray();
+      assertSame(small.get(0).asArray().get(0).asString(), small.get(1).asArray().get(0).asString());
+      assertNotSame(small.get(0).asArray().get(1).asString(), small.get(2).asArray().get(1).asString());
+
+      var many = new StringBuilder("[");
+      for (int i = 0; i < 400; i++) {
+        many.append(i > 0 ? "," : "").append("\"s").append(i % 200).append('"');
+      }
+      var grown = Json.parse(many.append(']').toString().getBytes(StandardCharsets.UTF_8), 1024).asArray();
+      for (int i = 0; i < 200; i++) {
+        assertEquals("s" + i, grown.get(i).asString());
+        assertSame(grown.get(i).asString(), grown.get(i + 200).asString());
+      }
+
+      var plain = Json.parse(bytes).asArray();
+      assertNotSame(plain.get(0).asArray().get(0).asString(), plain.get(1).asArray().get(0).asString());
+
+      var json = "{\"columns\":[\"status\"],\"types\":[\"text\"],\"values\":[[\"active\"]]}";
+      var r0 = new L4Result(Json.parse(json.getBytes(), 0).asObject());
+      var r1 = new L4Result(Json.parse(json.getBytes(), 0).asObject());
+      assertSame(r0.columns.get(0), r1.columns.get(0));
+      assertSame(r0.types.get(0), r1.types.get(0));
+    });
+
+    it("Indexes members of wide objects", () -> {
+      var obj = new JsonObject();
+      for (int i = 0; i < 1000; i++) {
+        obj.add("m" + i, i);
+      }
+      for (int i = 0; i < 1000; i++) {
+        assertEquals(i, obj.getInt("m" + i, -1));
+      }
+      assertNull(obj.get("m1000"));
+      obj.add("m5", -5);
+      assertEquals(-5, obj.getInt("m5", 0));
+      obj.remove("m5");
+      assertEquals(5, obj.getInt("m5", 0));
+      obj.remove("m0");
+      assertEquals(999, obj.getInt("m999", 0));
+      assertEquals(1, obj.getInt("m1", 0));
+      obj.set("m999", 0);
+      assertEquals(0, obj.getInt("m999", -1));
+
+      var view = JsonObject.unmodifiableObject(obj);
+      obj.add("extra", 1);
+      assertEquals(1, view.getInt("extra", 0));
+      obj.remove("extra").add("other", 2);
+      assertNull(view.get("extra"));
+      assertEquals(2, view.getInt("other", 0));
+    });
+
+    it("Indexes documents and decodes only the values that are read", () -> {
+      var json = "{\"store\":{\"raft\":{\"applied_index\":1234,\"state\":\"Leader\"},\"dir\":\"/tmp/r\\u00e9\"},"
+        + "\"nodes\":[1,{\"a\":[]},true,null,2.5],\"n\u00e4me\":\"x\",\"k\":1,\"k\":2}";
+      var root = JsonTape.parse(json.getBytes(StandardCharsets.UTF_8)).root();
+      assertTrue(root.isObject());
+      assertEquals(1234, root.path("store", "raft").getLong("applied_index", 0));
+      assertEquals("Leader", root.path("store", "raft", "state").asString());
+      assertEquals("/tmp/r\u00e9", root.path("store").getString("dir", null));
+      assertNull(root.path("store", "missing", "x"));
+      assertEquals(5, root.get("nodes").size());
+      assertTrue(root.get("nodes").get(1).get("a").isArray());
+      assertTrue(root.get("nodes").get(2).asBoolean());
+      assertTrue(root.get("nodes").get(3).isNull());
+      assertEquals(2.5, root.get("nodes").get(4).asDouble(), 0);
+      assertNull(root.get("nodes").get(5));
+      assertEquals("x", root.getString("n\u00e4me", null));
+      assertEquals(2, root.getLong("k", 0));
+      assertEquals(Arrays.asList("store", "nodes", "n\u00e4me", "k", "k"), root.names());
+      assertEquals(Json.parse(json).asObject().get("store"), root.get("store").toJsonValue());
+      assertEquals("[1,{\"a\":[]},true,null,2.5]", root.get("nodes").toString());
+
+      for (var bad : new String[] {"{", "[1,]", "{\"a\" 1}", "\"a", "01", "tru", "[1] x"}) {
+        try {
+          JsonTape.parse(bad.getBytes(StandardCharsets.UTF_8));
+          fail(bad);
+        } catch (ParseException e) {
+          assertNotNull(e.getLocation());
+        }
+      }
+    });
+
+    it("Writes UTF-8 to streams without building a String", () -> {
+      var sb = new StringBuilder();
+      for (int i = 0; i < 5000; i++) {
+        sb.append("a\u00e9\u6f22\ud83d\ude00\"\n");
+      }
+      var value = Json.object().add("text", sb.toString()).add("n", 42).add("list", Json.array(1, 2, 3));
+      var out = new java.io.ByteArrayOutputStream();
+      value.writeTo(out);
+      assertArrayEquals(value.toString().getBytes(StandardCharsets.UTF_8), out.toByteArray());
+      assertEquals(value, Json.parse(out.toByteArray()));
+
+      out.reset();
+      value.writeTo(out, WriterConfig.PRETTY_PRINT);
+      assertEquals(value.toString(WriterConfig.PRETTY_PRINT), out.toString(StandardCharsets.UTF_8));
+
+      out.reset();
+      var unpaired = Json.value("x\ud800y\udc00\ud800");
+      unpaired.writeTo(out);
+      assertArrayEquals(unpaired.toString().getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    });
+
+    it("Scans and escapes long strings in bulk", () -> {
+      var specials = new String[] {"\"", "\\", "\n", "\u0001", "\u001f", "\u2028", "\u00e9", "\ud83d\ude00", "\u007f"};
+      for (var special : specials) {
+        for (int pos = 0; pos < 20; pos++) {
+          var text = "abcdefghijklmnopqrstuvwxyz".substring(0, pos) + special + "0123456789ABCDEFGHIJ".substring(pos);
+          var json = Json.value(text).toString();
+          var bytes = json.getBytes(StandardCharsets.UTF_8);
+          assertEquals(text, Json.parse(bytes).asString());
+          assertEquals(text, Json.parse(json).asString());
+          assertEquals(text, JsonTape.parse(bytes).root().asString());
+          var body = new L4Body(8).str(text).toString();
+          assertEquals(json, body);
+
+          var raw = ("\"" + text + "\"").getBytes(StandardCharsets.UTF_8);
+          var control = special.charAt(0) < 0x20;
+          try {
+            assertEquals(text, Json.parse(raw).asString());
+            assertFalse(control || special.equals("\"") || special.equals("\\"));
+          } catch (ParseException e) {
+            assertTrue(control || special.equals("\"") || special.equals("\\"));
+          }
+        }
+      }
+    });
+
+    it("Decodes BLOB cells once and keeps the bytes", () -> {
+      var random = new Random(7);
+      for (int n = 0; n < 12; n++) {
+        var data = new byte[n];
+        random.nextBytes(data);
+        var b64 = Base64.getEncoder().encodeToString(data);
+        assertArrayEquals(data, L4Json.fromB64(b64));
+        assertArrayEquals(data, L4Json.fromB64(b64.replace("=", "")));
+      }
+      assertNull(L4Json.fromB64("abc=d"));
+      assertNull(L4Json.fromB64("a"));
+      assertNull(L4Json.fromB64("ab!d"));
+      assertNull(L4Json.fromB64("ab\u00e9d"));
+
+      var b64 = Base64.getEncoder().encodeToString("Hello, rqlite!".getBytes(StandardCharsets.UTF_8));
+      var res = new L4Result(Json.parse(
+        "{\"columns\":[\"b\",\"t\"],\"types\":[\"blob\",\"text\"],\"values\":[[\"" + b64 + "\",\"" + b64 + "\"],[\"not base64!\",null]]}"
+      ).asObject());
+      var row = (L4Row) res.values.get(0);
+      assertNotNull(row.getBytes(0));
+      assertNull(row.getBytes(1));
+      assertEquals(b64, row.get(0));
+      var rs = new L4Rs(res, null);
+      assertTrue(rs.next());
+      var bytes = rs.getBytes(1);
+      assertEquals("Hello, rqlite!", new String(bytes, StandardCharsets.UTF_8));
+      bytes[0] = 'J';
+      assertEquals("Hello, rqlite!", new String(rs.getBytes(1), StandardCharsets.UTF_8));
+      assertEquals("Hello, rqlite!", new String(rs.getBinaryStream(1).readAllBytes(), StandardCharsets.UTF_8));
+      assertEquals(14, rs.getBlob(1).length());
+      assertEquals(b64, rs.getString(1));
+
+      res.types.set(1, "blob");
+      assertEquals("Hello, rqlite!", new String(rs.getBytes(2), StandardCharsets.UTF_8));
+      assertNotNull(row.getBytes(1));
+      row.set(1, "");
+      assertNull(row.getBytes(1));
+
+      assertTrue(rs.next());
+      assertEquals("not base64!", rs.getString(1));
+      try {
+        rs.getBytes(1);
+        fail("Invalid base64 decoded");
+      } catch (java.sql.SQLException e) {
+        assertNotNull(e.getMessage());
+      }
+      assertNull(rs.getBytes(2));
+      assertTrue(rs.wasNull());
+    });
   }
 }
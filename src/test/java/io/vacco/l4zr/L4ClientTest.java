@@ -1,10 +1,17 @@
 package io.vacco.l4zr;
 
-import io.vacco.l4zr.rqlite.L4Statement;
+import io.vacco.l4zr.json.Json;
+import io.vacco.l4zr.json.JsonTape;
+import io.vacco.l4zr.rqlite.*;
 import j8spec.annotation.DefinedOrder;
 import j8spec.junit.J8SpecRunner;
 import org.junit.runner.RunWith;
 import java.awt.GraphicsEnvironment;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.net.InetSocketAddress;
+import com.sun.net.httpserver.HttpServer;
 
 import static java.lang.String.join;
 import static j8spec.J8Spec.*;
@@ -13,7 +20,566 @@ import static org.junit.Assert.*;
 @DefinedOrder
 @RunWith(J8SpecRunner.class)
 public class L4ClientTest {
+
+  private static JsonTape.Node tape(String json) {
+    return JsonTape.parse(json.getBytes(java.nio.charset.StandardCharsets.UTF_8)).root();
+  }
+
   static {
+    it("Captures the raft index of write responses", () -> {
+      var res = new L4Response(200, Json.parse(
+        "{\"results\":[{\"last_insert_id\":1,\"rows_affected\":1}],\"raft_index\":42}"
+      ).asObject());
+      assertEquals(Long.valueOf(42), res.raftIndex);
+      assertNull(new L4Response(200, Json.parse("{\"results\":[]}").asObject()).raftIndex);
+      assertTrue(L4Options.queryParams(false, true, L4Level.none).contains("raft_index=true"));
+      assertFalse(L4Options.queryParams(false, false, L4Level.none).contains("raft_index"));
+    });
+
+    it("Throttles applied index checks while the session is ahead", () -> {
+      var statusHits = new AtomicInteger();
+      var applied = new AtomicLong(5);
+      var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.createContext("/db/execute", ex -> {
+        ex.getRequestBody().readAllBytes();
+        var out = "{\"results\":[{\"rows_affected\":1}],\"raft_index\":10}".getBytes();
+        ex.sendResponseHeaders(200, out.length);
+        ex.getResponseBody().write(out);
+        ex.close();
+      });
+      server.createContext("/status", ex -> {
+        statusHits.incrementAndGet();
+        var out = ("{\"store\":{\"raft\":{\"applied_index\":" + applied.get() + "}}}").getBytes();
+        ex.sendResponseHeaders(200, out.length);
+        ex.getResponseBody().write(out);
+        ex.close();
+      });
+      server.start();
+      try {
+        var client = new L4Client("http://127.0.0.1:" + server.getAddress().getPort(), null);
+        client.execute(false, new L4Statement().sql("INSERT INTO t VALUES (1)"));
+        assertEquals(10, client.getSessionIndex());
+        for (int i = 0; i < 20; i++) {
+          assertEquals(L4Level.weak, client.readLevel(L4Level.none));
+        }
+        assertEquals(1, statusHits.get());
+        applied.set(10);
+        Thread.sleep(L4Client.kAppliedIndexRefreshMs + 20);
+        assertEquals(L4Level.none, client.readLevel(L4Level.none));
+        assertEquals(L4Level.none, client.readLevel(L4Level.none));
+        assertEquals(2, statusHits.get());
+      } finally {
+        server.stop(0);
+      }
+    });
+
+    it("Caches read results until a write touches their tables", () -> {
+      L4Options.resultCacheSize = 16;
+      var cache = L4Cache.of("http://cache-test:4001");
+      var sel = new L4Statement().sql("SELECT c.name FROM \"main\".colors c JOIN [shades] s ON s.color_id = c.id");
+      var res = new L4Response(200, Json.parse(
+        "{\"results\":[{\"columns\":[\"name\"],\"types\":[\"text\"],\"values\":[[\"red\"]]}]}"
+      ).asObject());
+      var ttl = TimeUnit.SECONDS.toNanos(5);
+
+      cache.put("q1", cache.epoch(), ttl, res, sel);
+      res.first().values.get(0).set(0, "blue");
+      var hit = cache.get("q1");
+      assertEquals("red", hit.first().values.get(0).get(0));
+      hit.first().values.clear();
+      assertEquals(1, cache.get("q1").first().values.size());
+
+      cache.invalidate("INSERT INTO users (name) VALUES ('colors')");
+      assertNotNull(cache.get("q1"));
+      cache.invalidate("WITH x AS (SELECT 1) UPDATE OR IGNORE main.Shades SET name = 'x'");
+      assertNull(cache.get("q1"));
+
+      cache.put("q1", cache.epoch(), ttl, res, sel);
+      cache.invalidate("DELETE FROM \"colors\" WHERE id = 1");
+      assertNull(cache.get("q1"));
+
+      cache.put("q1", cache.epoch(), ttl, res, sel);
+      cache.invalidate("CREATE TABLE other (id INTEGER)");
+      assertNull(cache.get("q1"));
+
+      var epoch = cache.epoch();
+      cache.invalidate("INSERT INTO colors (name) VALUES ('green')");
+      cache.put("q1", epoch, ttl, res, sel);
+      assertNull(cache.get("q1"));
+
+      cache.put("q2", cache.epoch(), 0, res, sel);
+      assertNull(cache.get("q2"));
+
+      var peer = L4Cache.of("http://cache-test:4003");
+      cache.put("q1", cache.epoch(), ttl, res, sel);
+      peer.put("q1", peer.epoch(), ttl, res, sel);
+      L4Cache.invalidateAll(new L4Statement().sql("UPDATE colors SET name = 'x'"));
+      assertNull(cache.get("q1"));
+      assertNull(peer.get("q1"));
+      L4Options.resultCacheSize = 0;
+    });
+
+    it("Coalesces identical in-flight reads", () -> {
+      var flight = L4Flight.of("http://flight-test:4001");
+      var calls = new AtomicInteger();
+      var release = new CountDownLatch(1);
+      var pool = Executors.newFixedThreadPool(8);
+      var futures = new ArrayList<Future<L4Response>>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(pool.submit(() -> flight.run("q", () -> {
+          calls.incrementAndGet();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+          return new L4Response(200, Json.parse(
+            "{\"results\":[{\"columns\":[\"n\"],\"types\":[\"integer\"],\"values\":[[\"1\"]]}]}"
+          ).asObject());
+        })));
+      }
+      while (calls.get() == 0) {
+        Thread.sleep(5);
+      }
+      Thread.sleep(50);
+      release.countDown();
+      var seen = Collections.newSetFromMap(new IdentityHashMap<L4Result, Boolean>());
+      for (var f : futures) {
+        var res = f.get(5, TimeUnit.SECONDS);
+        assertEquals("1", res.first().values.get(0).get(0));
+        seen.add(res.first());
+      }
+      pool.shutdown();
+      assertEquals(1, calls.get());
+      assertEquals(8, seen.size());
+      assertEquals(0, flight.inFlight());
+
+      var solo = new L4Response(200, Json.parse("{\"results\":[]}").asObject());
+      assertSame(solo, flight.run("solo", () -> solo));
+      var key = new L4Body(16).ascii("[\"SELECT 1\"]").key("0?level=none");
+      assertEquals(key, new L4Body(4).ascii("[\"SELECT 1\"]").key("0?level=none"));
+      assertEquals(key.hashCode(), new L4Body(4).ascii("[\"SELECT 1\"]").key("0?level=none").hashCode());
+      assertFalse(key.equals(new L4Body(16).ascii("[\"SELECT 2\"]").key("0?level=none")));
+      assertFalse(key.equals(new L4Body(16).ascii("[\"SELECT 1\"]").key("1?level=none")));
+    });
+
+    it("Fails waiters whose own timeout passes before the shared read returns", () -> {
+      var flight = L4Flight.of("http://flight-test:4001");
+      var calls = new AtomicInteger();
+      var started = new CountDownLatch(1);
+      var pool = Executors.newSingleThreadExecutor();
+      var leader = pool.submit(() -> flight.run("slow", () -> {
+        calls.incrementAndGet();
+        started.countDown();
+        try {
+          Thread.sleep(2500);
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        return new L4Response(200, Json.parse("{\"results\":[]}").asObject());
+      }));
+      started.await();
+      var start = System.nanoTime();
+      try {
+        flight.run("slow", () -> {
+          calls.incrementAndGet();
+          return new L4Response(200, Json.parse("{\"results\":[]}").asObject());
+        }, new L4Call().withTimeoutSec(1));
+        fail("Waiter outlived its timeout");
+      } catch (IllegalStateException e) {
+        assertTrue(e.getCause() instanceof java.net.http.HttpTimeoutException);
+      }
+      assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(2000));
+      assertNotNull(leader.get(5, TimeUnit.SECONDS));
+      assertEquals(1, calls.get());
+      pool.shutdown();
+    });
+
+    it("Stops the topology watcher when its last client closes", () -> {
+      L4Options.topologyPollMs = 60_000;
+      try {
+        var a = new L4Client("http://127.0.0.1:9", null);
+        var b = new L4Client("http://127.0.0.1:9", null);
+        var w = a.watcher();
+        assertSame(w, b.watcher());
+        assertSame(w, a.watcher());
+        a.close();
+        assertFalse(w.isClosed());
+        b.close();
+        assertTrue(w.isClosed());
+        var c = new L4Client("http://127.0.0.1:9", null);
+        var cw = c.watcher();
+        assertNotSame(w, cw);
+        c.close();
+        assertTrue(cw.isClosed());
+      } finally {
+        L4Options.topologyPollMs = 0;
+      }
+    });
+
+    it("Builds topology snapshots from node and status responses", () -> {
+      var status = tape("{\"store\":{\"leader\":{\"node_id\":\"2\",\"addr\":\"n2:4002\"}}}");
+      var legacy = L4Topology.of(tape(join("",
+        "{\"1\":{\"api_addr\":\"http://n1:4001\",\"addr\":\"n1:4002\",\"reachable\":true,\"leader\":false,\"time\":0.0012},",
+        "\"2\":{\"api_addr\":\"http://n2:4001\",\"addr\":\"n2:4002\",\"reachable\":true,\"leader\":false}}"
+      )), status, 1);
+      assertEquals("2", legacy.leader.id);
+      assertEquals(2, legacy.voters().size());
+      assertEquals(1.2, legacy.nodes.get(0).latencyMs, 0.0001);
+      assertFalse(legacy.sameAs(L4Topology.of(tape(join("",
+        "{\"1\":{\"api_addr\":\"http://n1:4001\",\"addr\":\"n1:4002\",\"reachable\":true,\"leader\":false},",
+        "\"2\":{\"api_addr\":\"http://n2:4001\",\"addr\":\"n2:4002\",\"reachable\":true,\"leader\":false}}"
+      )), null, 1)));
+
+      var v2 = L4Topology.of(tape(join("",
+        "{\"nodes\":[",
+        "{\"id\":\"3\",\"api_addr\":\"http://n3:4001\",\"addr\":\"n3:4002\",\"voter\":false,\"reachable\":true},",
+        "{\"id\":\"2\",\"api_addr\":\"http://n2:4001\",\"addr\":\"n2:4002\",\"voter\":true,\"reachable\":true,\"leader\":true},",
+        "{\"id\":\"1\",\"api_addr\":\"http://n1:4001\",\"addr\":\"n1:4002\",\"voter\":true,\"reachable\":true,\"time\":0.002}",
+        "]}"
+      )), null, 2);
+      assertEquals("2", v2.leader.id);
+      assertEquals(1, v2.nonVoters().size());
+      assertEquals("http://n3:4001", v2.nonVoters().get(0).apiAddr);
+      assertFalse(v2.sameAs(legacy));
+      assertTrue(v2.sameAs(L4Topology.of(tape(join("",
+        "{\"nodes\":[",
+        "{\"id\":\"1\",\"api_addr\":\"http://n1:4001\",\"addr\":\"n1:4002\",\"voter\":true,\"reachable\":true,\"time\":0.5},",
+        "{\"id\":\"2\",\"api_addr\":\"http://n2:4001\",\"addr\":\"n2:4002\",\"voter\":true,\"reachable\":true,\"leader\":true},",
+        "{\"id\":\"3\",\"api_addr\":\"http://n3:4001\",\"addr\":\"n3:4002\",\"voter\":false,\"reachable\":true}",
+        "]}"
+      )), null, 3)));
+    });
+
+    it("Retries transient failures according to the retry policy", () -> {
+      var refused = new IllegalStateException("HTTP POST error", new java.net.ConnectException("refused"));
+      var reset = new IllegalStateException("HTTP POST error", new java.io.IOException("connection reset"));
+      var election = new IllegalStateException("HTTP POST error", new L4Err.StatusError(503, "leadership lost"));
+      var syntax = new IllegalStateException("HTTP POST error", new L4Err.StatusError(400, "bad request"));
+
+      assertTrue(L4Retry.backoff.delayMs(1, refused, false) >= 0);
+      assertTrue(L4Retry.backoff.delayMs(1, reset, true) >= 0);
+      assertTrue(L4Retry.backoff.delayMs(1, election, true) >= 0);
+      assertTrue(L4Retry.backoff.delayMs(1, reset, false) < 0);
+      assertTrue(L4Retry.backoff.delayMs(1, election, false) < 0);
+      assertTrue(L4Retry.backoff.delayMs(1, syntax, true) < 0);
+      assertTrue(L4Retry.backoff.delayMs(L4Options.retryMaxAttempts, refused, true) < 0);
+      for (int i = 1; i < 8; i++) {
+        assertTrue(L4Retry.backoff.delayMs(1, election, true) <= L4Options.retryBaseMs);
+      }
+
+      var attempts = new AtomicInteger();
+      var client = new L4Client("http://127.0.0.1:1", null).withRetry((attempt, error, safe) -> {
+        attempts.incrementAndGet();
+        assertFalse(safe);
+        return attempt < 3 ? 1 : -1;
+      });
+      try {
+        client.execute(true, new L4Statement().sql("DELETE FROM t"));
+        fail("Request to an unreachable node succeeded");
+      } catch (IllegalStateException e) {
+        assertTrue(L4Retry.notSent(e));
+      }
+      assertEquals(3, attempts.get());
+    });
+
+    it("Keeps replica reads apart from reads sent to the base URL", () -> {
+      var queries = new AtomicInteger();
+      var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.createContext("/db/query", ex -> {
+        ex.getRequestBody().readAllBytes();
+        queries.incrementAndGet();
+        var out = "{\"results\":[{\"columns\":[\"n\"],\"types\":[\"integer\"],\"values\":[[1]]}]}".getBytes();
+        ex.sendResponseHeaders(200, out.length);
+        ex.getResponseBody().write(out);
+        ex.close();
+      });
+      server.createContext("/nodes", ex -> {
+        var out = "{\"nodes\":[]}".getBytes();
+        ex.sendResponseHeaders(200, out.length);
+        ex.getResponseBody().write(out);
+        ex.close();
+      });
+      server.start();
+      L4Options.resultCacheSize = 16;
+      try {
+        var url = "http://127.0.0.1:" + server.getAddress().getPort();
+        var replica = new L4Client(url, null).setReadOnly(true);
+        var primary = new L4Client(url, null);
+        var none = new L4Consistency(L4Level.none, null, null);
+        replica.query(none, new L4Statement().sql("SELECT 1"));
+        replica.query(none, new L4Statement().sql("SELECT 1"));
+        assertEquals(1, queries.get());
+        primary.query(none, new L4Statement().sql("SELECT 1"));
+        assertEquals(2, queries.get());
+        primary.query(none, new L4Statement().sql("SELECT 1"));
+        assertEquals(2, queries.get());
+      } finally {
+        L4Options.resultCacheSize = 0;
+        server.stop(0);
+      }
+    });
+
+    it("Hedges slow reads to a second request", () -> {
+      var lat = L4Latency.of("http://latency-test:4001");
+      L4Options.hedgePercentile = 90;
+      assertEquals(-1, lat.hedgeDelayNanos());
+      for (int i = 1; i <= 32; i++) {
+        lat.record(i * 1_000_000L);
+      }
+      assertEquals(29_000_000L, lat.hedgeDelayNanos());
+      assertTrue(lat.tryHedge());
+      assertTrue(lat.tryHedge());
+      assertTrue(lat.tryHedge());
+      assertFalse(lat.tryHedge());
+
+      var requests = new AtomicInteger();
+      var slow = new AtomicBoolean();
+      var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.setExecutor(Executors.newCachedThreadPool());
+      server.createContext("/db/query", ex -> {
+        ex.getRequestBody().readAllBytes();
+        requests.incrementAndGet();
+        if (slow.getAndSet(false)) {
+          try {
+            Thread.sleep(2000);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        var out = "{\"results\":[{\"columns\":[\"n\"],\"types\":[\"integer\"],\"values\":[[1]]}]}".getBytes();
+        ex.sendResponseHeaders(200, out.length);
+        ex.getResponseBody().write(out);
+        ex.close();
+      });
+      server.start();
+      try {
+        var client = new L4Client("http://127.0.0.1:" + server.getAddress().getPort(), null);
+        var none = new L4Consistency(L4Level.none, null, null);
+        for (int i = 0; i < 40; i++) {
+          client.query(none, new L4Statement().sql("SELECT " + i));
+        }
+        requests.set(0);
+        slow.set(true);
+        var start = System.nanoTime();
+        var res = client.query(none, new L4Statement().sql("SELECT 1"));
+        assertEquals("1", res.first().values.get(0).get(0));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+        assertEquals(2, requests.get());
+      } finally {
+        server.stop(0);
+        L4Options.hedgePercentile = 0;
+      }
+    });
+
+    it("Does not hedge reads that must see this session's writes", () -> {
+      var requests = new AtomicInteger();
+      var slow = new AtomicBoolean();
+      var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.setExecutor(Executors.newCachedThreadPool());
+      server.createContext("/db/query", ex -> {
+        ex.getRequestBody().readAllBytes();
+        requests.incrementAndGet();
+        if (slow.getAndSet(false)) {
+          try {
+            Thread.sleep(1500);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        var out = "{\"results\":[{\"columns\":[\"n\"],\"types\":[\"integer\"],\"values\":[[1]]}]}".getBytes();
+        ex.sendResponseHeaders(200, out.length);
+        ex.getResponseBody().write(out);
+        ex.close();
+      });
+      server.createContext("/db/execute", ex -> {
+        ex.getRequestBody().readAllBytes();
+        var out = "{\"results\":[{\"rows_affected\":1}],\"raft_index\":10}".getBytes();
+        ex.sendResponseHeaders(200, out.length);
+        ex.getResponseBody().write(out);
+        ex.close();
+      });
+      server.createContext("/status", ex -> {
+        var out = "{\"store\":{\"raft\":{\"applied_index\":10}}}".getBytes();
+        ex.sendResponseHeaders(200, out.length);
+        ex.getResponseBody().write(out);
+        ex.close();
+      });
+      server.start();
+      L4Options.hedgePercentile = 90;
+      try {
+        var client = new L4Client("http://127.0.0.1:" + server.getAddress().getPort(), null);
+        var none = new L4Consistency(L4Level.none, null, null);
+        for (int i = 0; i < 40; i++) {
+          client.query(none, new L4Statement().sql("SELECT " + i));
+        }
+        client.execute(false, new L4Statement().sql("INSERT INTO t VALUES (1)"));
+        assertEquals(L4Level.none, client.readLevel(L4Level.none));
+        requests.set(0);
+        slow.set(true);
+        var res = client.query(none, new L4Statement().sql("SELECT 1"));
+        assertEquals("1", res.first().values.get(0).get(0));
+        assertEquals(1, requests.get());
+      } finally {
+        server.stop(0);
+        L4Options.hedgePercentile = 0;
+      }
+    });
+
+    it("Hedges replica reads only to other non-voters", () -> {
+      var voterHits = new AtomicInteger();
+      var replicaHits = new AtomicInteger();
+      var slow = new AtomicBoolean();
+      var voter = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      var replica = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      var base = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      var result = "{\"results\":[{\"columns\":[\"n\"],\"types\":[\"integer\"],\"values\":[[1]]}]}".getBytes();
+      for (var srv : List.of(voter, replica)) {
+        var hits = srv == voter ? voterHits : replicaHits;
+        srv.setExecutor(Executors.newCachedThreadPool());
+        srv.createContext("/db/query", ex -> {
+          ex.getRequestBody().readAllBytes();
+          hits.incrementAndGet();
+          if (slow.getAndSet(false)) {
+            try {
+              Thread.sleep(1500);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+          ex.sendResponseHeaders(200, result.length);
+          ex.getResponseBody().write(result);
+          ex.close();
+        });
+        srv.start();
+      }
+      var nodes = String.format(join("",
+        "{\"nodes\":[",
+        "{\"id\":\"1\",\"api_addr\":\"http://127.0.0.1:%d\",\"addr\":\"n1:4002\",\"voter\":true,\"reachable\":true,\"leader\":true,\"time\":0.001},",
+        "{\"id\":\"2\",\"api_addr\":\"http://127.0.0.1:%d\",\"addr\":\"n2:4002\",\"voter\":false,\"reachable\":true,\"time\":0.5}",
+        "]}"), voter.getAddress().getPort(), replica.getAddress().getPort()).getBytes();
+      base.createContext("/nodes", ex -> {
+        ex.sendResponseHeaders(200, nodes.length);
+        ex.getResponseBody().write(nodes);
+        ex.close();
+      });
+      base.createContext("/status", ex -> {
+        var out = "{}".getBytes();
+        ex.sendResponseHeaders(200, out.length);
+        ex.getResponseBody().write(out);
+        ex.close();
+      });
+      base.start();
+      L4Options.topologyPollMs = 60_000;
+      L4Options.hedgePercentile = 90;
+      var client = new L4Client("http://127.0.0.1:" + base.getAddress().getPort(), null);
+      try {
+        client.setReadOnly(true);
+        for (int i = 0; i < 100 && client.topology().isEmpty(); i++) {
+          Thread.sleep(20);
+        }
+        assertEquals(1, client.topology().nonVoters().size());
+        var none = new L4Consistency(L4Level.none, null, null);
+        for (int i = 0; i < 40; i++) {
+          client.query(none, new L4Statement().sql("SELECT " + i));
+        }
+        slow.set(true);
+        var res = client.query(none, new L4Statement().sql("SELECT 1"));
+        assertEquals("1", res.first().values.get(0).get(0));
+        assertEquals(0, voterHits.get());
+        assertTrue(replicaHits.get() >= 41);
+      } finally {
+        client.close();
+        voter.stop(0);
+        replica.stop(0);
+        base.stop(0);
+        L4Options.topologyPollMs = 0;
+        L4Options.hedgePercentile = 0;
+      }
+    });
+
+    it("Cuts the adaptive limit once per congestion event", () -> {
+      L4Options.maxConcurrency = 10;
+      L4Options.adaptiveConcurrency = true;
+      try {
+        var lim = L4Limiter.of("http://limiter-burst:4001");
+        for (int i = 0; i < 5; i++) {
+          assertTrue(lim.acquire(0));
+        }
+        for (int i = 0; i < 5; i++) {
+          lim.release(TimeUnit.SECONDS.toNanos(10), false);
+        }
+        assertEquals(9, lim.getLimit());
+        Thread.sleep(5);
+        assertTrue(lim.acquire(0));
+        lim.release(0, false);
+        assertEquals(8, lim.getLimit());
+      } finally {
+        L4Options.adaptiveConcurrency = false;
+        L4Options.maxConcurrency = 0;
+      }
+    });
+
+    it("Limits concurrent requests per node", () -> {
+      L4Options.maxConcurrency = 2;
+      L4Options.adaptiveConcurrency = true;
+      try {
+        var lim = L4Limiter.of("http://limiter-test:4001/db/query?level=none");
+        assertSame(lim, L4Limiter.of("http://limiter-test:4001/status"));
+        assertTrue(lim.acquire(0));
+        assertTrue(lim.acquire(0));
+        assertFalse(lim.acquire(0));
+        assertFalse(lim.acquire(20));
+        lim.release(1_000_000, false);
+        assertEquals(1, lim.getLimit());
+        assertFalse(lim.acquire(0));
+        lim.release(1_000_000, true);
+        assertEquals(2, lim.getLimit());
+        assertEquals(0, lim.getInFlight());
+      } finally {
+        L4Options.adaptiveConcurrency = false;
+      }
+
+      var release = new CountDownLatch(1);
+      var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.setExecutor(Executors.newCachedThreadPool());
+      server.createContext("/db/query", ex -> {
+        ex.getRequestBody().readAllBytes();
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        var out = "{\"results\":[{\"columns\":[\"n\"],\"types\":[\"integer\"],\"values\":[[1]]}]}".getBytes();
+        ex.sendResponseHeaders(200, out.length);
+        ex.getResponseBody().write(out);
+        ex.close();
+      });
+      server.start();
+      L4Options.maxConcurrency = 1;
+      L4Options.maxQueueMs = 50;
+      try {
+        var client = new L4Client("http://127.0.0.1:" + server.getAddress().getPort(), null);
+        var first = CompletableFuture.supplyAsync(() -> client.query(new L4Statement().sql("SELECT 1")));
+        while (L4Limiter.of(client.getBaseUrl()).getInFlight() == 0) {
+          Thread.sleep(5);
+        }
+        try {
+          client.query(new L4Statement().sql("SELECT 2"));
+          fail("Request past the concurrency limit was sent");
+        } catch (L4Err.LimitError e) {
+          assertTrue(e.getMessage().contains("limit: 1"));
+        }
+        release.countDown();
+        assertEquals("1", first.get(5, TimeUnit.SECONDS).first().values.get(0).get(0));
+        assertEquals(0, L4Limiter.of(client.getBaseUrl()).getInFlight());
+      } finally {
+        server.stop(0);
+        L4Options.maxConcurrency = 0;
+        L4Options.maxQueueMs = 1000;
+      }
+    });
+
     if (!GraphicsEnvironment.isHeadless()) {
       it("Interacts with an Rqlite instance", () -> {
         var rq = L4Tests.localClient();
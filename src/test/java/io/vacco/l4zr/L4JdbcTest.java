@@ -1,6 +1,8 @@
 package io.vacco.l4zr;
 
+import io.vacco.l4zr.jdbc.*;
 import io.vacco.l4zr.json.Json;
+import io.vacco.l4zr.rqlite.*;
 import io.vacco.l4zr.rqlite.L4Result;
 import j8spec.UnsafeBlock;
 import j8spec.annotation.DefinedOrder;
@@ -15,6 +17,9 @@ import java.sql.*;
 import java.time.*;
 import java.util.*;
 import java.util.Date;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.sun.net.httpserver.HttpServer;
 
 import static io.vacco.l4zr.jdbc.L4Jdbc.*;
 import static io.vacco.l4zr.jdbc.L4Err.*;
@@ -470,8 +475,28 @@ public class L4JdbcTest {
 
       // Test edge cases
       assertTrue(isSelect("SELECT * FROM table -- comment with select"));
-      assertTrue(isSelect("/* SELECT in comment */ INSERT INTO table (a) VALUES (1)"));
+      assertFalse(isSelect("/* SELECT in comment */ INSERT INTO table (a) VALUES (1)"));
       assertTrue(isSelect("SELECT * FROM table WHERE name = 'select'"));
+
+      // Test token-level classification
+      assertFalse(isSelect("INSERT INTO t2 (a) SELECT a FROM t1"));
+      assertFalse(isSelect("UPDATE t SET selected = 1"));
+      assertFalse(isSelect("WITH x AS (SELECT 1 AS a) INSERT INTO t (a) SELECT a FROM x"));
+      assertFalse(isSelect("SELECT 1; DELETE FROM t"));
+      assertFalse(isSelect("PRAGMA foreign_keys = ON"));
+      assertTrue(isSelect("WITH RECURSIVE x(n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM x) SELECT n FROM x"));
+      assertTrue(isSelect("-- leading comment\n  select * from t"));
+      assertTrue(isSelect("PRAGMA table_info(t)"));
+      assertTrue(isSelect("PRAGMA main.index_list(t)"));
+      assertTrue(isSelect("PRAGMA journal_mode"));
+      assertFalse(isSelect("PRAGMA foreign_keys(1)"));
+      assertFalse(isSelect("PRAGMA journal_mode(WAL)"));
+      assertFalse(isSelect("PRAGMA optimize"));
+      assertTrue(isSelect("EXPLAIN QUERY PLAN SELECT * FROM t"));
+      assertTrue(isSelect("VALUES (1), (2)"));
+      assertFalse(isSelect("INSERT INTO t (a) VALUES (1) RETURNING id"));
+      assertTrue(L4Sql.of("INSERT INTO t (a) VALUES (1) RETURNING id").returning);
+      assertFalse(L4Sql.of("INSERT INTO t (\"returning\") VALUES (1)").returning);
       assertFalse(isSelect(""));
       assertFalse(isSelect("  "));
       assertFalse(isSelect(null));
@@ -528,5 +553,375 @@ public class L4JdbcTest {
         assertNotNull(e.getMessage());
       }
     });
+
+    it("Caches lexed SQL statements", () -> {
+      var sql = "INSERT INTO t (a, b) VALUES (?, ?); SELECT * FROM t WHERE a = '?;' -- ?\n";
+      var lex = L4Sql.of(sql);
+      assertSame(lex, L4Sql.of(sql));
+      assertEquals(2, lex.statements.length);
+      assertEquals("INSERT INTO t (a, b) VALUES (?, ?)", lex.statements[0]);
+      assertEquals("SELECT * FROM t WHERE a = '?;' -- ?", lex.statements[1]);
+      assertEquals(2, lex.paramCount);
+      assertEquals(3, L4Sql.of("SELECT * FROM t WHERE a = ?3 AND b = ?1").paramCount);
+      assertEquals(0, L4Sql.of("SELECT 1 /* ? */").paramCount);
+      var quoted = L4Sql.of("SELECT [a;?], `b;?` FROM t WHERE c = ?");
+      assertEquals(1, quoted.statements.length);
+      assertEquals(1, quoted.paramCount);
+      L4Sql.clearCache();
+      assertNotSame(lex, L4Sql.of(sql));
+    });
+
+    it("Reads consistency hints from SQL comments", () -> {
+      var lex = L4Sql.of("/*+ level=none freshness=2s */ SELECT * FROM t /* level=strong */");
+      assertTrue(lex.select);
+      assertEquals(L4Level.none, lex.hint.level);
+      assertEquals(Long.valueOf(2), lex.hint.freshnessSec);
+      assertNull(lex.hint.freshnessStrict);
+      assertNull(L4Sql.of("SELECT 1 /* level=none */").hint);
+      assertNull(L4Sql.of("/*+ level=bogus */ SELECT 1").hint);
+      assertFalse(lex.idempotent);
+      assertTrue(L4Sql.of("/*+ idempotent */ DELETE FROM t WHERE id = ?").idempotent);
+
+      var over = L4Consistency.merge(lex.hint, new L4Consistency(L4Level.linearizable, null, true));
+      assertEquals(L4Level.linearizable, over.level);
+      assertEquals(Long.valueOf(2), over.freshnessSec);
+      assertTrue(over.freshnessStrict);
+
+      var qp = L4Options.queryParams(false, false, L4Level.none, lex.hint);
+      assertTrue(qp.contains("level=none"));
+      assertTrue(qp.contains("freshness=2s"));
+      assertSame(qp, L4Options.queryParams(false, false, L4Level.none, lex.hint));
+    });
+
+    it("Rejects writes on read-only connections", () -> {
+      var client = new L4Client("http://127.0.0.1:1", null).setReadOnly(true);
+      assertTrue(client.isReadOnly());
+      var st = new L4St(client);
+      for (UnsafeBlock write : new UnsafeBlock[] {
+        () -> st.executeUpdate("INSERT INTO t (a) VALUES (1)"),
+        () -> st.execute("DELETE FROM t"),
+        () -> new L4Ps(client, "UPDATE t SET a = ?").executeUpdate()
+      }) {
+        try {
+          write.tryToExecute();
+          fail("Write accepted on a read-only connection");
+        } catch (SQLException e) {
+          assertEquals(SqlStateReadOnly, e.getSQLState());
+        }
+      }
+      try {
+        client.execute(true, new L4Statement().sql("DELETE FROM t"));
+        fail("Write accepted on a read-only client");
+      } catch (IllegalStateException e) {
+        assertTrue(e.getMessage().contains("read-only"));
+      }
+      assertFalse(client.setReadOnly(false).isReadOnly());
+    });
+
+    it("Checks connection validity with one bounded status request", () -> {
+      var hits = new java.util.concurrent.atomic.AtomicInteger();
+      var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.setExecutor(Executors.newCachedThreadPool());
+      server.createContext("/status", ex -> {
+        try {
+          if (hits.incrementAndGet() > 1) {
+            Thread.sleep(5000);
+          }
+          ex.sendResponseHeaders(503, -1);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        ex.close();
+      });
+      server.start();
+      try {
+        var conn = new L4Conn(new L4Client("http://127.0.0.1:" + server.getAddress().getPort(), null));
+        assertFalse(conn.isValid(5));
+        assertEquals(1, hits.get());
+        var start = System.nanoTime();
+        assertFalse(conn.isValid(1));
+        assertTrue(System.nanoTime() - start < 3_000_000_000L);
+        assertEquals(2, hits.get());
+      } finally {
+        server.stop(0);
+      }
+    });
+
+    it("Applies per-statement timeouts and cancels in-flight statements", () -> {
+      var queries = new ArrayList<String>();
+      var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.setExecutor(Executors.newCachedThreadPool());
+      server.createContext("/db/query", ex -> {
+        synchronized (queries) {
+          queries.add(ex.getRequestURI().getQuery());
+        }
+        try {
+          Thread.sleep(5000);
+          ex.sendResponseHeaders(200, -1);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        ex.close();
+      });
+      server.start();
+      try {
+        var client = new L4Client("http://127.0.0.1:" + server.getAddress().getPort(), null);
+        var st = new L4St(client);
+        assertEquals(L4Options.timeoutSec, st.getQueryTimeout());
+        st.setQueryTimeout(1);
+        assertEquals(1, st.getQueryTimeout());
+        assertEquals(5, new L4St(client).getQueryTimeout());
+
+        var start = System.nanoTime();
+        try {
+          st.executeQuery("SELECT 1");
+          fail("Query outlived its timeout");
+        } catch (SQLTimeoutException e) {
+          assertEquals(SqlStateTimeout, e.getSQLState());
+        }
+        assertTrue(System.nanoTime() - start < 4_000_000_000L);
+        synchronized (queries) {
+          assertTrue(queries.get(0).contains("timeout=1s"));
+        }
+
+        var st2 = new L4St(client);
+        var failure = new CompletableFuture<SQLException>();
+        var runner = new Thread(() -> {
+          try {
+            st2.executeQuery("SELECT 2");
+            failure.complete(null);
+          } catch (SQLException e) {
+            failure.complete(e);
+          }
+        });
+        start = System.nanoTime();
+        runner.start();
+        Thread.sleep(300);
+        st2.cancel();
+        var e = failure.get(3, TimeUnit.SECONDS);
+        assertNotNull(e);
+        assertEquals(SqlStateCancelled, e.getSQLState());
+        assertTrue(System.nanoTime() - start < 3_000_000_000L);
+      } finally {
+        server.stop(0);
+      }
+    });
+
+    it("Leaves long LOB cells on the server behind locators", () -> {
+      var stmt = "SELECT rowid, d.name, body FROM docs d WHERE name = ? ORDER BY rowid";
+      var probe = new L4Result(Json.parse(
+        "{\"columns\":[\"rowid\",\"name\",\"body\"],\"types\":[\"integer\",\"text\",\"blob\"]}"
+      ).asObject());
+      assertNull(L4Lob.Plan.of("SELECT * FROM docs", probe));
+      assertNull(L4Lob.Plan.of("SELECT rowid, name, body FROM docs JOIN tags ON 1", probe));
+      assertNull(L4Lob.Plan.of("SELECT rowid, name, body FROM docs, tags", probe));
+      assertNull(L4Lob.Plan.of("SELECT 1 AS rowid, name, body FROM docs", probe));
+      assertNull(L4Lob.Plan.of("SELECT rowid, name, body FROM (SELECT rowid, * FROM docs)", probe));
+      assertNull(L4Lob.Plan.of("SELECT name, body FROM docs", probe));
+      assertNotNull(L4Lob.Plan.of("SELECT rowid, name, body FROM docs ORDER BY name, rowid", probe));
+      assertNotNull(L4Lob.Plan.of("SELECT rowid, name, body FROM docs WHERE name IN (?, ?) LIMIT 10, 20", probe));
+
+      var plan = L4Lob.Plan.of(stmt, probe);
+      assertNotNull(plan);
+      assertEquals("docs", plan.table);
+      assertNull(plan.wrap(new L4Statement().sql(stmt)));
+      L4Options.lobLocatorLength = 16;
+      try {
+        var query = plan.wrap(new L4Statement().sql(stmt).withPositionalParam(0, "a"));
+        assertTrue(query.statement.sql.contains("CASE WHEN length(\"body\") > 16 THEN NULL ELSE \"body\" END AS \"body\""));
+        assertTrue(query.statement.sql.endsWith("FROM (" + stmt + ")"));
+        assertFalse(query.statement.sql.contains("length(\"rowid\")"));
+        assertEquals("a", query.statement.positionalParams.get(0));
+
+        var doc = new byte[100_000];
+        new Random(5).nextBytes(doc);
+        var calls = new int[1];
+        L4Lob.Source source = st -> {
+          calls[0]++;
+          assertEquals(7L, st.positionalParams.get(st.positionalParams.size() - 1));
+          String cell;
+          if (st.sql.startsWith("SELECT substr(CAST(\"body\" AS BLOB), ?, ?) FROM docs WHERE \"rowid\" = ?")) {
+            var pos = (int) (long) (Long) st.positionalParams.get(0) - 1;
+            var end = Math.min(doc.length, pos + (Integer) st.positionalParams.get(1));
+            cell = "\"" + Base64.getEncoder().encodeToString(Arrays.copyOfRange(doc, pos, end)) + "\"";
+          } else if (st.sql.startsWith("SELECT length(CAST(\"body\" AS BLOB))")) {
+            cell = Integer.toString(doc.length);
+          } else {
+            assertEquals("SELECT \"body\" FROM docs WHERE \"rowid\" = ?", st.sql);
+            cell = "\"" + Base64.getEncoder().encodeToString(doc) + "\"";
+          }
+          return new L4Result(Json.parse("{\"columns\":[\"v\"],\"types\":[\"\"],\"values\":[[" + cell + "]]}").asObject());
+        };
+        var result = new L4Result(Json.parse(
+          "{\"columns\":[\"rowid\",\"name\",\"body\",\"l1\",\"l2\"],\"types\":[\"integer\",\"\",\"\",\"\",\"\"],"
+            + "\"values\":[[7,\"a\",null,0,1],[8,\"b\",\"AAEC\",0,0],[9,\"c\",null,null,null]]}"
+        ).asObject());
+        var cells = query.locate(result, source);
+        assertNotNull(cells);
+        assertEquals(List.of("rowid", "name", "body"), result.columns);
+        assertEquals("blob", result.types.get(2));
+        assertEquals(3, result.values.get(0).size());
+        assertTrue(cells.isElided(0, 2));
+        assertFalse(cells.isElided(1, 2));
+        assertFalse(cells.isElided(2, 2));
+
+        var rs = new L4Rs(result, null).withLobs(cells);
+        assertTrue(rs.next());
+        var blob = rs.getBlob(3);
+        assertEquals(0, calls[0]);
+        assertArrayEquals(Arrays.copyOfRange(doc, 4, 14), blob.getBytes(5, 10));
+        assertEquals(doc.length, blob.length());
+        assertEquals(2, calls[0]);
+        assertArrayEquals(doc, blob.getBinaryStream().readAllBytes());
+        assertEquals(4, calls[0]);
+        assertArrayEquals(Arrays.copyOfRange(doc, 99_990, 100_000), blob.getBinaryStream(99_991, 100).readAllBytes());
+        assertArrayEquals(doc, rs.getBytes(3));
+        assertFalse(cells.isElided(0, 2));
+        assertTrue(rs.next());
+        assertArrayEquals(new byte[] {0, 1, 2}, rs.getBlob(3).getBytes(1, 3));
+        assertTrue(rs.next());
+        assertNull(rs.getBlob(3));
+        assertTrue(rs.wasNull());
+
+        var text = "Lorem ipsum dolor sit amet";
+        var clob = new L4Clob(new L4Lob.Ref(st -> {
+          var pos = (int) (long) (Long) st.positionalParams.get(0) - 1;
+          var end = Math.min(text.length(), pos + (Integer) st.positionalParams.get(1));
+          return new L4Result(Json.parse(
+            "{\"columns\":[\"v\"],\"types\":[\"\"],\"values\":[[\"" + text.substring(pos, end) + "\"]]}"
+          ).asObject());
+        }, "docs", "summary", "rowid", 7, false));
+        assertEquals("ipsum", clob.getSubString(7, 5));
+        assertEquals(text, new BufferedReader(clob.getCharacterStream()).readLine());
+        clob.setString(1, "L");
+        assertEquals(text, clob.getSubString(1, text.length()));
+      } finally {
+        L4Options.lobLocatorLength = 0;
+      }
+    });
+
+    it("Probes only statements that qualify, once per server", () -> {
+      var probes = new int[1];
+      var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.createContext("/db/query", ex -> {
+        ex.getRequestBody().readAllBytes();
+        probes[0]++;
+        var out = "{\"results\":[{\"columns\":[\"rowid\",\"body\"],\"types\":[\"integer\",\"blob\"]}]}".getBytes();
+        ex.sendResponseHeaders(200, out.length);
+        ex.getResponseBody().write(out);
+        ex.close();
+      });
+      server.start();
+      L4Options.lobLocatorLength = 16;
+      try {
+        var port = server.getAddress().getPort();
+        var client = new L4Client("http://127.0.0.1:" + port, null);
+        for (var sql : new String[] {"SELECT * FROM docs", "SELECT body FROM docs", "SELECT rowid, body FROM docs, tags"}) {
+          assertNull(L4Lob.plan(client, null, null, L4Sql.of(sql), new L4Statement().sql(sql)));
+          assertNull(L4Lob.plan(client, null, null, L4Sql.of(sql), new L4Statement().sql(sql)));
+        }
+        assertEquals(0, probes[0]);
+
+        var sql = "SELECT rowid, body FROM docs ORDER BY body, rowid LIMIT 10, 20";
+        assertNotNull(L4Lob.plan(client, null, null, L4Sql.of(sql), new L4Statement().sql(sql)));
+        assertNotNull(L4Lob.plan(client, null, null, L4Sql.of(sql), new L4Statement().sql(sql)));
+        assertEquals(1, probes[0]);
+        var other = new L4Client("http://localhost:" + port, null);
+        assertNotNull(L4Lob.plan(other, null, null, L4Sql.of(sql), new L4Statement().sql(sql)));
+        assertEquals(2, probes[0]);
+        L4Lob.evict(client, L4Sql.of(sql));
+        assertNotNull(L4Lob.plan(other, null, null, L4Sql.of(sql), new L4Statement().sql(sql)));
+        assertEquals(2, probes[0]);
+
+        L4Options.sqlCacheSize = 0;
+        L4Lob.clearCache();
+        var uncached = "SELECT rowid, body FROM docs WHERE rowid > 1";
+        assertNotNull(L4Lob.plan(client, null, null, L4Sql.of(uncached), new L4Statement().sql(uncached)));
+        assertNotNull(L4Lob.plan(client, null, null, L4Sql.of(uncached), new L4Statement().sql(uncached)));
+        assertEquals(3, probes[0]);
+      } finally {
+        L4Options.sqlCacheSize = 512;
+        L4Options.lobLocatorLength = 0;
+        server.stop(0);
+      }
+    });
+
+    it("Cancels statements whose locator probe is still running", () -> {
+      var reads = new AtomicInteger();
+      var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.setExecutor(Executors.newCachedThreadPool());
+      server.createContext("/db/query", ex -> {
+        var body = new String(ex.getRequestBody().readAllBytes());
+        if (body.contains("LIMIT 0")) {
+          try {
+            Thread.sleep(2000);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        } else {
+          reads.incrementAndGet();
+        }
+        var out = "{\"results\":[{\"columns\":[\"rowid\",\"body\"],\"types\":[\"integer\",\"blob\"]}]}".getBytes();
+        ex.sendResponseHeaders(200, out.length);
+        ex.getResponseBody().write(out);
+        ex.close();
+      });
+      server.start();
+      L4Options.lobLocatorLength = 16;
+      try {
+        var st = new L4St(new L4Client("http://127.0.0.1:" + server.getAddress().getPort(), null));
+        var failure = new CompletableFuture<SQLException>();
+        var runner = new Thread(() -> {
+          try {
+            st.executeQuery("SELECT rowid, body FROM docs WHERE rowid = 7");
+            failure.complete(null);
+          } catch (SQLException e) {
+            failure.complete(e);
+          }
+        });
+        runner.start();
+        Thread.sleep(300);
+        st.cancel();
+        var e = failure.get(3, TimeUnit.SECONDS);
+        assertNotNull(e);
+        assertEquals(SqlStateCancelled, e.getSQLState());
+        assertEquals(0, reads.get());
+      } finally {
+        L4Options.lobLocatorLength = 0;
+        server.stop(0);
+      }
+    });
+
+    it("Sends long LOB locators as statement parameters", () -> {
+      var doc = new byte[L4BinaryStream.kHeadSize + L4Lob.kChunk + 100];
+      new Random(7).nextBytes(doc);
+      var fetches = new int[1];
+      var blob = new L4Blob(new L4Lob.Ref(st -> {
+        var body = L4Statement.toBody(st); // as the client does, while the outer statement is being written
+        try {
+          fetches[0]++;
+          String cell;
+          if (st.sql.startsWith("SELECT length(")) {
+            cell = Integer.toString(doc.length);
+          } else {
+            var pos = (int) (long) (Long) st.positionalParams.get(0) - 1;
+            var end = Math.min(doc.length, pos + (Integer) st.positionalParams.get(1));
+            cell = "\"" + Base64.getEncoder().encodeToString(Arrays.copyOfRange(doc, pos, end)) + "\"";
+          }
+          return new L4Result(Json.parse("{\"columns\":[\"v\"],\"types\":[\"\"],\"values\":[[" + cell + "]]}").asObject());
+        } finally {
+          body.release();
+        }
+      }, "docs", "body", "rowid", 7, true));
+      var st = new L4Statement().sql("INSERT INTO copies VALUES (?)").withPositionalParam(blob);
+      assertEquals(2, fetches[0]);
+      var body = L4Statement.toBody(st);
+      assertEquals(
+        "[[\"INSERT INTO copies VALUES (?)\",\"" + Base64.getEncoder().encodeToString(doc) + "\"]]",
+        body.toString()
+      );
+      assertEquals(3, fetches[0]);
+      body.release();
+    });
   }
-}
\ No newline at end of file
+}
@@ -336,12 +336,7 @@ public class L4StTest {
         } catch (SQLException e) {
           assertEquals(SqlStateFeatureNotSupported, e.getSQLState());
         }
-        try {
-          stmt.cancel();
-          fail("Expected SQLException for cancel");
-        } catch (SQLException e) {
-          assertEquals(SqlStateFeatureNotSupported, e.getSQLState());
-        }
+        stmt.cancel(); // nothing in flight, no-op
         try {
           stmt.setCursorName("cursor");
           fail("Expected SQLException for setCursorName");
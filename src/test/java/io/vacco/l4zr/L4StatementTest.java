@@ -1,9 +1,19 @@
 package io.vacco.l4zr;
 
-import io.vacco.l4zr.rqlite.L4Statement;
+import io.vacco.l4zr.rqlite.*;
 import j8spec.annotation.DefinedOrder;
 import j8spec.junit.J8SpecRunner;
 import org.junit.runner.RunWith;
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
 
 import static j8spec.J8Spec.*;
 import static org.junit.Assert.*;
@@ -11,6 +21,21 @@ import static org.junit.Assert.*;
 @DefinedOrder
 @RunWith(J8SpecRunner.class)
 public class L4StatementTest {
+
+  private static final class Reversed {
+    final String text;
+    Reversed(String text) {
+      this.text = text;
+    }
+  }
+
+  private static final class Nested {
+    final String sql;
+    Nested(String sql) {
+      this.sql = sql;
+    }
+  }
+
   static {
     it("Creates rqlite prepared statements", () -> {
       // Simple statement with no parameters
@@ -25,6 +50,10 @@ public class L4StatementTest {
         .withPositionalParam("Alice");
       var statement2 = builder2.build();
       assertEquals("[\"SELECT * FROM users WHERE id = ? AND name = ?\",1,\"Alice\"]", statement2.toString());
+      List<Object> params = builder2.positionalParams;
+      assertEquals(List.of(1, "Alice"), params);
+      params.set(3, "x");
+      assertEquals(Arrays.asList(1, "Alice", null, "x"), params);
 
       // Statement with named parameters
       var builder3 = new L4Statement()
@@ -43,5 +72,117 @@ public class L4StatementTest {
       var statement4 = builder4.build();
       assertEquals("[\"INSERT INTO users (id, data) VALUES (?, ?)\",1,\"3q2+7w==\"]", statement4.toString());
     });
+
+    it("Serializes statements directly to UTF-8 bytes", () -> {
+      var statements = new L4Statement[] {
+        new L4Statement().sql("SELECT * FROM users"),
+        new L4Statement()
+          .sql("INSERT INTO users (id, name, score, ok, data) VALUES (?, ?, ?, ?, ?)")
+          .withPositionalParams(-42L, "Zo\u00eb \"\\\n\t\u0001 \u2028 \u6f22 \ud83d\ude00", 1.0, true, new byte[] {1, 2, 3}),
+        new L4Statement()
+          .sql("SELECT * FROM users WHERE id = :id AND name = :name")
+          .withNamedParam("id", Integer.MIN_VALUE)
+          .withNamedParam("name", null)
+      };
+      var expected = L4Statement.toArray(statements).toString();
+      var body = L4Statement.toBody(statements);
+      assertEquals(expected, body.toString());
+      assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), body.toByteArray());
+      assertArrayEquals(body.toByteArray(), new L4Body(16).json(L4Statement.toArray(statements)).toByteArray());
+    });
+
+    it("Encodes common JDBC parameter types natively", () -> {
+      var st = new L4Statement().sql("INSERT INTO t VALUES (?, ?, ?, ?, ?, ?, ?)").withPositionalParams(
+        (short) 4, new BigDecimal("1E+3"), Timestamp.valueOf("2024-01-02 03:04:05"),
+        LocalDate.of(2024, 1, 2), UUID.fromString("93b885ad-fe0d-3089-8df6-34904fd59f71"),
+        new byte[] {1, 2}, Thread.State.NEW
+      );
+      assertEquals(
+        "[[\"INSERT INTO t VALUES (?, ?, ?, ?, ?, ?, ?)\",4,\"1000\",\"2024-01-02 03:04:05.0\",\"2024-01-02\"," +
+          "\"93b885ad-fe0d-3089-8df6-34904fd59f71\",\"AQI=\",\"NEW\"]]",
+        L4Statement.toBody(st).toString()
+      );
+      L4Json.register(Reversed.class, (out, r) -> out.str(new StringBuilder(r.text).reverse().toString()));
+      var reversed = new Reversed("abc");
+      assertEquals("[[\"x\",\"cba\"]]", L4Statement.toBody(new L4Statement().sql("x").withPositionalParam(reversed)).toString());
+      assertEquals("abc", reversed.text);
+    });
+
+    it("Packs primitive parameters into batch rows", () -> {
+      var sql = "INSERT INTO t VALUES (?, ?, ?, ?)";
+      var batch = new L4Batch(sql);
+      var row = new L4Statement().sql(sql);
+      var expected = new L4Statement[3];
+      for (int r = 0; r < 3; r++) {
+        row.withPositionalParam(0, r)
+          .withPositionalParam(1, r * 1.5)
+          .withPositionalParam(2, "s" + r)
+          .withPositionalParam(3, r % 2 == 0);
+        expected[r] = new L4Statement().sql(sql).withPositionalParams(r, r * 1.5, "s" + r, r % 2 == 0);
+        batch.add(row.positionalParams);
+        row.positionalParams.clear();
+      }
+      assertEquals(3, batch.size());
+      assertEquals(L4Statement.toBody(expected).toString(), batch.toBody().toString());
+      assertEquals(Integer.class, expected[1].positionalParams.get(0).getClass());
+      batch.clear();
+      assertTrue(batch.isEmpty());
+    });
+
+    it("Encodes stream parameters a chunk at a time", () -> {
+      var random = new Random(3);
+      for (var n : new int[] {0, 1, 2, 3, 100, L4BinaryStream.kHeadSize - 1, L4BinaryStream.kHeadSize + 1,
+                              L4BinaryStream.kHeadSize + L4Body.kB64Chunk * 2 + 2}) {
+        var data = new byte[n];
+        random.nextBytes(data);
+        var expected = "\"" + Base64.getEncoder().encodeToString(data) + "\"";
+        var unbounded = new L4Body(16).value(new L4BinaryStream(new ByteArrayInputStream(data), -1));
+        assertEquals(expected, unbounded.toString());
+        var exact = new L4Body(16).value(new L4BinaryStream(new ByteArrayInputStream(data), n));
+        assertEquals(expected, exact.toString());
+        var longer = new byte[n + 10];
+        System.arraycopy(data, 0, longer, 0, n);
+        var limited = new L4Body(16).value(new L4BinaryStream(new ByteArrayInputStream(longer), n));
+        assertEquals(expected, limited.toString());
+      }
+
+      var big = new L4BinaryStream(new ByteArrayInputStream(new byte[L4BinaryStream.kHeadSize * 2]), -1);
+      new L4Body(16).value(big);
+      try {
+        new L4Body(16).value(big);
+        fail("Stream parameter sent twice");
+      } catch (IllegalStateException e) {
+        assertTrue(e.getMessage().contains("already sent"));
+      }
+      var small = new L4BinaryStream(new ByteArrayInputStream(new byte[] {1, 2, 3}), -1);
+      assertEquals(new L4Body(16).value(small).toString(), new L4Body(16).value(small).toString());
+    });
+
+    it("Reads LOB parameters when set, and keeps nested bodies apart", () -> {
+      var data = new byte[L4BinaryStream.kHeadSize + 100];
+      new Random(5).nextBytes(data);
+      var st = new L4Statement().sql("INSERT INTO t VALUES (?, ?)")
+        .withPositionalParam(new javax.sql.rowset.serial.SerialBlob(data))
+        .withPositionalParam(new javax.sql.rowset.serial.SerialClob("abc".toCharArray()));
+      assertTrue(st.positionalParams.get(0) instanceof L4BinaryStream);
+      assertEquals("abc", st.positionalParams.get(1));
+      var named = new L4Statement().sql("x").withNamedParam("b", new javax.sql.rowset.serial.SerialBlob(data));
+      assertTrue(named.namedParams.get("b") instanceof L4BinaryStream);
+      var body = L4Statement.toBody(st);
+      assertEquals(
+        "[[\"INSERT INTO t VALUES (?, ?)\",\"" + Base64.getEncoder().encodeToString(data) + "\",\"abc\"]]",
+        body.toString()
+      );
+      body.release();
+
+      L4Json.register(Nested.class, (out, n) -> {
+        var inner = L4Statement.toBody(new L4Statement().sql(n.sql));
+        out.num(inner.size());
+        inner.release();
+      });
+      var outer = L4Statement.toBody(new L4Statement().sql("SELECT ?").withPositionalParam(new Nested("SELECT 1")));
+      assertEquals("[[\"SELECT ?\",14]]", outer.toString());
+      outer.release();
+    });
   }
 }